@@ -0,0 +1,85 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Остаток от деления против степени двойки с перемешиванием хеша на разных типах ключей
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddressingBenchmark {
+    @Param({"MODULO", "POWER_OF_TWO"})
+    String addressing;
+
+    @Param({"INTEGER", "LONG", "STRING"})
+    String keyType;
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    Object[] keys;
+    Object[] missing;
+    Map<Object, Object> table;
+    int next;
+
+    @Setup
+    public void setUp() {
+        keys = new Object[size];
+        missing = new Object[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = key(i);
+            missing[i] = key(size + i);
+        }
+        table = newTable();
+        for (Object key : keys) {
+            table.put(key, key);
+        }
+    }
+
+    private Object key(int i) {
+        switch (keyType) {
+            case "INTEGER":
+                return i;
+            case "LONG":
+                return i * 0x9E3779B97F4A7C15L;
+            default:
+                return "key-" + i;
+        }
+    }
+
+    private Map<Object, Object> newTable() {
+        return Tables.hashTable(16, 0.75f, Tables.option("HashTable$Addressing", addressing));
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = next + 1 == size ? 0 : next + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Object getHit() {
+        return table.get(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object getMiss() {
+        return table.get(missing[nextIndex()]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public Map<Object, Object> putGrowing() {
+        Map<Object, Object> map = newTable();
+        for (int i = 0; i < 1000; i++) {
+            Object key = keys[i];
+            map.put(key, key);
+        }
+        return map;
+    }
+}
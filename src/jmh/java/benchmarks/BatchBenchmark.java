@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//getAll группами против цикла get на таблице, которая не помещается в кеш. Время - на пакет из batch ключей
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+    @Param({"DOUBLE_HASHING", "BUCKETIZED"})
+    String probing;
+
+    @Param({"4000000"})
+    int size;
+
+    @Param({"256"})
+    int batch;
+
+    Object[] keys;
+    Object[] request;
+    Object[] out;
+    Map<Object, Object> table;
+    MethodHandle getAll;
+    int next;
+
+    @Setup
+    public void setUp() {
+        keys = new Object[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "key-" + i;
+        }
+        table = Tables.hashTable(16, 0.75f, Tables.option("HashTable$Probing", probing));
+        for (Object key : keys) {
+            table.put(key, key);
+        }
+        Collections.shuffle(Arrays.asList(keys), new Random(1));
+        request = new Object[batch];
+        out = new Object[batch];
+        getAll = Tables.method(table, "getAll", Object[].class, Object[].class);
+    }
+
+    private void nextRequest() {
+        if (next + batch > size) next = 0;
+        System.arraycopy(keys, next, request, 0, batch);
+        next += batch;
+    }
+
+    @Benchmark
+    public Object[] getLoop() {
+        nextRequest();
+        for (int i = 0; i < batch; i++) {
+            out[i] = table.get(request[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public Object[] getAll() throws Throwable {
+        nextRequest();
+        getAll.invoke(request, out);
+        return out;
+    }
+}
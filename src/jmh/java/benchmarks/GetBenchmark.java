@@ -0,0 +1,63 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Сравнение поиска по последовательности проб с прежним полным обходом entrySet()
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetBenchmark {
+    @Param({"1000", "100000", "2000000"})
+    int size;
+
+    Map<Integer, Integer> table;
+    int next;
+
+    @Setup
+    public void setUp() {
+        table = Tables.hashTable();
+        for (int i = 0; i < size; i++) {
+            table.put(i, i);
+        }
+    }
+
+    private int nextKey() {
+        int key = next;
+        next = next + 1 == size ? 0 : next + 1;
+        return key;
+    }
+
+    @Benchmark
+    public Integer getHit() {
+        return table.get(nextKey());
+    }
+
+    @Benchmark
+    public Integer getMiss() {
+        return table.get(-1 - nextKey());
+    }
+
+    @Benchmark
+    public boolean containsKey() {
+        return table.containsKey(nextKey());
+    }
+
+    //Прежняя реализация get: обход всех ячеек через entrySet()
+    @Benchmark
+    public void entrySetScan(Blackhole bh) {
+        Integer key = nextKey();
+        for (Map.Entry<Integer, Integer> entry : table.entrySet()) {
+            if (entry.getKey().equals(key)) {
+                bh.consume(entry.getValue());
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Заполнение пустой таблицы с расширениями и копирование через putAll, время на всю таблицу
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrowthBenchmark {
+    @Param({"HashTable", "HashMap", "Hashtable", "ConcurrentHashMap"})
+    String impl;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"SEQUENTIAL_INT", "RANDOM_LONG", "UUID_STRING"})
+    KeyDistribution keys;
+
+    Object[] present;
+    Map<Object, Object> source;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        present = keys.present(size);
+        source = Tables.map("HashMap");
+        for (Object key : present) {
+            source.put(key, key);
+        }
+    }
+
+    @Benchmark
+    public Map<Object, Object> growFromEmpty() {
+        Map<Object, Object> map = Tables.map(impl);
+        for (Object key : present) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map<Object, Object> putAll() {
+        Map<Object, Object> map = Tables.map(impl);
+        map.putAll(source);
+        return map;
+    }
+}
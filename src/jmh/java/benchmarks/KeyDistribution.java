@@ -0,0 +1,42 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+//Наборы ключей для бенчмарков. Отсутствующие ключи берутся из того же распределения
+public enum KeyDistribution {
+    SEQUENTIAL_INT {
+        Object key(SplittableRandom random, int i) {
+            return i;
+        }
+    },
+    RANDOM_LONG {
+        Object key(SplittableRandom random, int i) {
+            return random.nextLong();
+        }
+    },
+    UUID_STRING {
+        Object key(SplittableRandom random, int i) {
+            return new UUID(random.nextLong(), random.nextLong()).toString();
+        }
+    };
+
+    abstract Object key(SplittableRandom random, int i);
+
+    Object[] present(int size) {
+        return keys(42, 0, size);
+    }
+
+    Object[] absent(int size) {
+        return keys(4242, size, size);
+    }
+
+    private Object[] keys(long seed, int offset, int size) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Object[] keys = new Object[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = key(random, offset + i);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,23 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//Запуск JMH с записью результатов в JSON (jmh-result.json), если формат не указан явно.
+//Пример: java -jar target/benchmarks.jar MapBenchmark -p size=1000,100000 -jvmArgsAppend -Xmx8g
+public final class Main {
+    private Main() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.addAll(List.of("-rf", "json"));
+            if (!options.contains("-rff")) {
+                options.addAll(List.of("-rff", "jmh-result.json"));
+            }
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
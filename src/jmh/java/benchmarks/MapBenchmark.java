@@ -0,0 +1,80 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Основные операции над заполненной таблицей размера size
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+    @Param({"HashTable", "HashMap", "Hashtable", "ConcurrentHashMap"})
+    String impl;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"SEQUENTIAL_INT", "RANDOM_LONG", "UUID_STRING"})
+    KeyDistribution keys;
+
+    Object[] present;
+    Object[] absent;
+    Map<Object, Object> map;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        present = keys.present(size);
+        absent = keys.absent(size);
+        map = Tables.map(impl);
+        for (Object key : present) {
+            map.put(key, key);
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = next + 1 == size ? 0 : next + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Object getHit() {
+        return map.get(present[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object getMiss() {
+        return map.get(absent[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object putExisting() {
+        Object key = present[nextIndex()];
+        return map.put(key, key);
+    }
+
+    //Удаление и повторная вставка, чтобы размер таблицы не менялся
+    @Benchmark
+    public Object removeAndPut() {
+        Object key = present[nextIndex()];
+        Object value = map.remove(key);
+        map.put(key, value);
+        return value;
+    }
+
+    //Время полного обхода таблицы
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            bh.consume(entry.getKey());
+            bh.consume(entry.getValue());
+        }
+    }
+}
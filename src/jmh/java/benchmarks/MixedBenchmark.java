@@ -0,0 +1,65 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+//Смесь чтений и записей с заданной долей чтений; запись - удаление и вставка ключа
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MixedBenchmark {
+    private static final int OPERATIONS = 1 << 16;
+
+    @Param({"HashTable", "HashMap", "Hashtable", "ConcurrentHashMap"})
+    String impl;
+
+    @Param({"1000", "1000000"})
+    int size;
+
+    @Param({"SEQUENTIAL_INT", "RANDOM_LONG", "UUID_STRING"})
+    KeyDistribution keys;
+
+    @Param({"50", "90", "99"})
+    int readPercent;
+
+    Object[] present;
+    boolean[] reads;
+    int[] indexes;
+    Map<Object, Object> map;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        present = keys.present(size);
+        map = Tables.map(impl);
+        for (Object key : present) {
+            map.put(key, key);
+        }
+        SplittableRandom random = new SplittableRandom(7);
+        reads = new boolean[OPERATIONS];
+        indexes = new int[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            reads[i] = random.nextInt(100) < readPercent;
+            indexes[i] = random.nextInt(size);
+        }
+    }
+
+    @Benchmark
+    public Object operation() {
+        int op = next;
+        next = (next + 1) & (OPERATIONS - 1);
+        Object key = present[indexes[op]];
+        if (reads[op]) {
+            return map.get(key);
+        }
+        Object value = map.remove(key);
+        map.put(key, value);
+        return value;
+    }
+}
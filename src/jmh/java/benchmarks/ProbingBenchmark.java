@@ -0,0 +1,76 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Двойное хеширование против Robin Hood, групп по 8 ячеек и кукушки при обычном и высоком коэффициенте заполнения
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProbingBenchmark {
+    @Param({"DOUBLE_HASHING", "ROBIN_HOOD", "BUCKETIZED", "CUCKOO"})
+    String probing;
+
+    @Param({"0.75", "0.9"})
+    float loadFactor;
+
+    @Param({"1000000"})
+    int size;
+
+    Object[] keys;
+    Object[] missing;
+    Map<Object, Object> table;
+    int next;
+
+    @Setup
+    public void setUp() {
+        keys = new Object[size];
+        missing = new Object[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "key-" + i;
+            missing[i] = "key-" + (size + i);
+        }
+        table = newTable();
+        for (Object key : keys) {
+            table.put(key, key);
+        }
+        //Порядок обращений не должен совпадать с порядком вставки, иначе MODULO выигрывает за счёт кеша
+        Collections.shuffle(Arrays.asList(keys), new Random(1));
+        Collections.shuffle(Arrays.asList(missing), new Random(2));
+    }
+
+    private Map<Object, Object> newTable() {
+        return Tables.hashTable(16, loadFactor, Tables.option("HashTable$Probing", probing));
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = next + 1 == size ? 0 : next + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Object getHit() {
+        return table.get(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object getMiss() {
+        return table.get(missing[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object removeAndPut() {
+        Object key = keys[nextIndex()];
+        table.remove(key);
+        return table.put(key, key);
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Распределение времени put при росте таблицы: полная перестройка против переноса частями
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PutLatencyBenchmark {
+    @Param({"FULL", "INCREMENTAL"})
+    String resizeMode;
+
+    @Param({"1000000"})
+    int size;
+
+    Map<Integer, Integer> table;
+    int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        table = Tables.hashTable(16, 0.75f, Tables.option("HashTable$ResizeMode", resizeMode));
+        next = 0;
+    }
+
+    @Benchmark
+    public Integer put() {
+        if (next == size) {
+            table.clear();
+            next = 0;
+        }
+        int key = next++;
+        return table.put(key, key);
+    }
+}
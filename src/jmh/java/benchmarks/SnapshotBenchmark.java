@@ -0,0 +1,48 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Согласованная копия для отчёта при продолжающейся записи: копия в HashMap против snapshot(),
+//за которым следует запись, копирующая массив ссылок таблицы
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"1000000"})
+    int size;
+
+    Map<Object, Object> table;
+    MethodHandle snapshot;
+    int next;
+
+    @Setup
+    public void setUp() {
+        table = Tables.hashTable();
+        for (int i = 0; i < size; i++) {
+            table.put("key-" + i, i);
+        }
+        snapshot = Tables.method(table, "snapshot");
+    }
+
+    @Benchmark
+    public Object copyThenPut() {
+        Map<Object, Object> copy = new HashMap<>(table);
+        table.put("key-" + (next++ % size), next);
+        return copy;
+    }
+
+    @Benchmark
+    public Object snapshotThenPut() throws Throwable {
+        Object copy = snapshot.invoke();
+        table.put("key-" + (next++ % size), next);
+        return copy;
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//JMH не работает с классами из пакета по умолчанию, поэтому таблицы создаются через рефлексию
+final class Tables {
+    private Tables() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> Map<K, V> hashTable(Object... args) {
+        return (Map<K, V>) newInstance("HashTable", args);
+    }
+
+    //Реализация Map по имени из параметра бенчмарка
+    @SuppressWarnings("unchecked")
+    static <K, V> Map<K, V> map(String impl) {
+        switch (impl) {
+            case "HashMap":
+                return new HashMap<>();
+            case "Hashtable":
+                return new Hashtable<>();
+            case "ConcurrentHashMap":
+                return new ConcurrentHashMap<>();
+            case "HashTable":
+                return hashTable();
+            default:
+                return (Map<K, V>) newInstance(impl);
+        }
+    }
+
+    //Значение вложенного перечисления, например option("HashTable$ResizeMode", "FULL")
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object option(String enumClass, String name) {
+        try {
+            return Enum.valueOf((Class<? extends Enum>) Class.forName(enumClass), name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //Открытый метод таблицы, привязанный к экземпляру, например method(table, "getAll", Object[].class, Object[].class)
+    static MethodHandle method(Object target, String name, Class<?>... types) {
+        try {
+            return MethodHandles.publicLookup().unreflect(target.getClass().getMethod(name, types)).bindTo(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Object newInstance(String className, Object... args) {
+        try {
+            Class<?> type = Class.forName(className);
+            for (Constructor<?> constructor : type.getConstructors()) {
+                if (constructor.getParameterCount() == args.length && matches(constructor.getParameterTypes(), args)) {
+                    return constructor.newInstance(args);
+                }
+            }
+            throw new IllegalArgumentException("Нет подходящего конструктора " + className);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean matches(Class<?>[] types, Object[] args) {
+        for (int i = 0; i < types.length; i++) {
+            if (!wrap(types[i]).isInstance(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == float.class) return Float.class;
+        if (type == boolean.class) return Boolean.class;
+        return type;
+    }
+}
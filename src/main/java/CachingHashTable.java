@@ -0,0 +1,521 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+
+//Ограниченный кеш на ячейках HashTable: элементы - наследники Item с полями для вытеснения и срока жизни.
+//get не берёт блокировок и ничего не создаёт: обращение отмечается записью в поле элемента
+//(LRU - номер обращения, CLOCK - бит), для W-TinyLFU хеш ещё кладётся в кольцевой буфер,
+//который переносится в счётчики частот при записи. Жертва для LRU выбирается по выборке ячеек.
+//Просроченные элементы удаляются при чтении, при вытеснении и в cleanUp(), до этого они учитываются в size()
+public class CachingHashTable<K, V> extends HashTable<K, V> {
+    //Сколько живых ячеек просматривается при выборе жертвы
+    private static final int SAMPLE_SIZE = 8;
+    private static final int READ_BUFFER_SIZE = 64;
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+    private final long maximum;  //Число элементов или суммарный вес
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    private final Policy policy;
+    private long weight = 0;
+    private long expireAfterWriteNanos = 0;
+    private long expireAfterAccessNanos = 0;
+    private boolean expiring = false;
+    private LongSupplier ticker = System::nanoTime;
+    private RemovalListener<? super K, ? super V> removalListener;
+    private RemovalCause removalCause = RemovalCause.EXPLICIT;  //Причина для следующего removed()
+    private long entryTtlNanos = -1;  //Срок жизни для put с явным сроком
+    private long tick = 0;  //Счётчик обращений для LRU
+    private int hand = 0;  //Стрелка CLOCK
+    private long random = 0x9E3779B97F4A7C15L;
+    //W-TinyLFU: окно недавно вставленных элементов и кандидат, вышедший из окна
+    private final FrequencySketch sketch;
+    private final ArrayDeque<CacheItem> window;
+    private final int windowSize;
+    private CacheItem candidate;
+    private final int[] readBuffer;
+    private int readCount = 0;
+
+    //LRU - самый давний по обращению из выборки, CLOCK - второй шанс по кругу ячеек,
+    //TINY_LFU - окно на 1% и допуск вышедшего из окна элемента, только если он чаще жертвы
+    public enum Policy {
+        LRU,
+        CLOCK,
+        TINY_LFU
+    }
+
+    public enum RemovalCause {
+        EXPLICIT,
+        REPLACED,
+        EXPIRED,
+        SIZE
+    }
+
+    @FunctionalInterface
+    public interface RemovalListener<K, V> {
+        void onRemoval(K key, V value, RemovalCause cause);
+    }
+
+    public CachingHashTable(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher, Policy policy) {
+        super(16, 0.75f);
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Неправильный размер " + maximumWeight);
+        }
+        this.maximum = maximumWeight;
+        this.weigher = weigher;
+        this.policy = Objects.requireNonNull(policy);
+        if (policy == Policy.TINY_LFU) {
+            sketch = new FrequencySketch(maximumWeight);
+            window = new ArrayDeque<>();
+            windowSize = (int) Math.max(1, Math.min(maximumWeight / 100, Integer.MAX_VALUE));
+            readBuffer = new int[READ_BUFFER_SIZE];
+        } else {
+            sketch = null;
+            window = null;
+            windowSize = 0;
+            readBuffer = null;
+        }
+    }
+
+    public CachingHashTable(long maximumSize, Policy policy) {
+        this(maximumSize, null, policy);
+    }
+
+    public CachingHashTable(long maximumSize) {
+        this(maximumSize, Policy.TINY_LFU);
+    }
+
+    //Настройка
+
+    public CachingHashTable<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+        expireAfterWriteNanos = toNanos(duration, unit);
+        expiring = expireAfterWriteNanos > 0 || expireAfterAccessNanos > 0;
+        return this;
+    }
+
+    public CachingHashTable<K, V> expireAfterAccess(long duration, TimeUnit unit) {
+        expireAfterAccessNanos = toNanos(duration, unit);
+        expiring = expireAfterWriteNanos > 0 || expireAfterAccessNanos > 0;
+        return this;
+    }
+
+    public CachingHashTable<K, V> removalListener(RemovalListener<? super K, ? super V> listener) {
+        this.removalListener = listener;
+        return this;
+    }
+
+    //Источник времени в наносекундах, для тестов
+    public CachingHashTable<K, V> ticker(LongSupplier ticker) {
+        this.ticker = Objects.requireNonNull(ticker);
+        return this;
+    }
+
+    private static long toNanos(long duration, TimeUnit unit) {
+        if (duration < 0) throw new IllegalArgumentException("Неправильный срок " + duration);
+        return unit.toNanos(duration);
+    }
+
+    public long weight() {
+        return weigher == null ? size() : weight;
+    }
+
+    //Элементы кеша
+
+    private class CacheItem extends Item<K, V> {
+        int weight;
+        long accessed;  //Номер последнего обращения
+        boolean referenced;  //Бит CLOCK
+        boolean inWindow;
+        boolean removed;
+        long writeDeadline = NO_DEADLINE;
+        long accessDeadline = NO_DEADLINE;
+
+        CacheItem(K key, V value, int hash) {
+            super(key, value, hash);
+            weight = weigh(key, value);
+            written();
+        }
+
+        @Override
+        public V setValue(V newValue) {
+            V oldValue = super.setValue(newValue);
+            int newWeight = weigh(getKey(), newValue);
+            CachingHashTable.this.weight += newWeight - weight;
+            weight = newWeight;
+            written();
+            if (oldValue != newValue) notifyRemoval(getKey(), oldValue, RemovalCause.REPLACED);
+            return oldValue;
+        }
+
+        private void written() {
+            accessed = ++tick;
+            referenced = true;
+            if (expiring || entryTtlNanos >= 0) {
+                long now = ticker.getAsLong();
+                long ttl = entryTtlNanos >= 0 ? entryTtlNanos : expireAfterWriteNanos;
+                writeDeadline = ttl > 0 ? now + ttl : NO_DEADLINE;
+                accessDeadline = expireAfterAccessNanos > 0 ? now + expireAfterAccessNanos : NO_DEADLINE;
+            }
+        }
+
+        boolean isExpired(long now) {
+            return (writeDeadline != NO_DEADLINE && now - writeDeadline >= 0)
+                    || (accessDeadline != NO_DEADLINE && now - accessDeadline >= 0);
+        }
+    }
+
+    private int weigh(K key, V value) {
+        if (weigher == null) return 1;
+        int w = weigher.applyAsInt(key, value);
+        if (w < 0) throw new IllegalArgumentException("Неправильный вес " + w);
+        return w;
+    }
+
+    @Override
+    Item<K, V> newItem(K key, V value, int hash) {
+        return new CacheItem(key, value, hash);
+    }
+
+    @Override
+    void inserted(Item<K, V> item) {
+        CacheItem cacheItem = (CacheItem) item;
+        weight += cacheItem.weight;
+        if (policy == Policy.TINY_LFU) {
+            drainReadBuffer();
+            sketch.increment(item.hash);
+            cacheItem.inWindow = true;
+            window.addLast(cacheItem);
+            while (window.size() > windowSize) {
+                CacheItem oldest = window.pollFirst();
+                oldest.inWindow = false;
+                if (!oldest.removed) candidate = oldest;
+            }
+        }
+        evictIfNeeded();
+    }
+
+    @Override
+    void removed(Item<K, V> item) {
+        CacheItem cacheItem = (CacheItem) item;
+        weight -= cacheItem.weight;
+        cacheItem.removed = true;
+        RemovalCause cause = removalCause;
+        removalCause = RemovalCause.EXPLICIT;
+        notifyRemoval(item.getKey(), item.getValue(), cause);
+    }
+
+    private void notifyRemoval(K key, V value, RemovalCause cause) {
+        if (removalListener != null) removalListener.onRemoval(key, value, cause);
+    }
+
+    //Чтение
+
+    //Просроченный элемент удаляется, иначе отмечается обращение
+    private CacheItem access(Object key) {
+        CacheItem item = (CacheItem) getItem(key);
+        if (item == null) return null;
+        if (expiring || item.writeDeadline != NO_DEADLINE) {
+            long now = ticker.getAsLong();
+            if (item.isExpired(now)) {
+                evict(item, RemovalCause.EXPIRED);
+                return null;
+            }
+            if (expireAfterAccessNanos > 0) item.accessDeadline = now + expireAfterAccessNanos;
+        }
+        switch (policy) {
+            case LRU -> item.accessed = ++tick;
+            case CLOCK -> item.referenced = true;
+            case TINY_LFU -> {
+                item.accessed = ++tick;
+                readBuffer[readCount++] = item.hash;
+                if (readCount == READ_BUFFER_SIZE) drainReadBuffer();
+            }
+        }
+        return item;
+    }
+
+    private void drainReadBuffer() {
+        for (int i = 0; i < readCount; i++) {
+            sketch.increment(readBuffer[i]);
+        }
+        readCount = 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        CacheItem item = access(key);
+        return item == null ? null : item.getValue();
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return access(key) != null;
+    }
+
+    //Запись: после изменения значения вес мог вырасти
+
+    @Override
+    public V put(K key, V value) {
+        V oldValue = super.put(key, value);
+        evictIfNeeded();
+        return oldValue;
+    }
+
+    //Пакетные операции идут через get и put, чтобы учитывались обращения и вытеснение
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (m == null) throw new NullPointerException("Map не может быть null");
+        for (Map.Entry<? extends K, ? extends V> item : m.entrySet()) {
+            put(item.getKey(), item.getValue());
+        }
+    }
+
+    @Override
+    public int getAll(K[] keys, V[] out) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(out);
+        if (out.length < keys.length) throw new IllegalArgumentException("Неправильный размер " + out.length);
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if ((out[i] = get(keys[i])) != null) found++;
+        }
+        return found;
+    }
+
+    //Вставка со своим сроком жизни, перекрывает expireAfterWrite
+    public V put(K key, V value, long duration, TimeUnit unit) {
+        entryTtlNanos = toNanos(duration, unit);
+        try {
+            return put(key, value);
+        } finally {
+            entryTtlNanos = -1;
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        boolean replaced = super.replace(key, oldValue, newValue);
+        evictIfNeeded();
+        return replaced;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        V oldValue = super.replace(key, value);
+        evictIfNeeded();
+        return oldValue;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        V value = super.computeIfPresent(key, remappingFunction);
+        evictIfNeeded();
+        return value;
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        V value = super.compute(key, remappingFunction);
+        evictIfNeeded();
+        return value;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        V result = super.merge(key, value, remappingFunction);
+        evictIfNeeded();
+        return result;
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        super.replaceAll(function);
+        evictIfNeeded();
+    }
+
+    @Override
+    public void clear() {
+        if (removalListener != null) {
+            for (Item<K, V> item : slots()) {
+                if (item instanceof CachingHashTable<?, ?>.CacheItem) {
+                    removalListener.onRemoval(item.getKey(), item.getValue(), RemovalCause.EXPLICIT);
+                }
+            }
+        }
+        super.clear();
+        weight = 0;
+        candidate = null;
+        if (window != null) window.clear();
+        readCount = 0;
+        hand = 0;
+    }
+
+    //Элементы кеша меняются при каждом обращении и вытесняются по ссылкам из окна,
+    //поэтому общие со снимком элементы не подходят: снимок строится из копии
+    @Override
+    public HashTable<K, V> snapshot() {
+        return new HashTable<>(this).snapshot();
+    }
+
+    //Удаление всех просроченных элементов
+    public void cleanUp() {
+        long now = ticker.getAsLong();
+        List<CacheItem> expired = new ArrayList<>();
+        for (Item<K, V> item : slots()) {
+            if (item instanceof CachingHashTable<?, ?>.CacheItem && ((CacheItem) item).isExpired(now)) {
+                expired.add((CacheItem) item);
+            }
+        }
+        for (CacheItem item : expired) {
+            evict(item, RemovalCause.EXPIRED);
+        }
+    }
+
+    //Вытеснение
+
+    private boolean overLimit() {
+        return weigher == null ? size() > maximum : weight > maximum;
+    }
+
+    private void evictIfNeeded() {
+        while (overLimit()) {
+            CacheItem victim = victim();
+            if (victim == null) return;
+            evict(victim, expiring && victim.isExpired(ticker.getAsLong()) ? RemovalCause.EXPIRED : RemovalCause.SIZE);
+        }
+    }
+
+    private void evict(CacheItem item, RemovalCause cause) {
+        removalCause = cause;
+        try {
+            super.remove(item.getKey());
+        } finally {
+            removalCause = RemovalCause.EXPLICIT;
+        }
+        if (item == candidate) candidate = null;
+    }
+
+    private CacheItem victim() {
+        if (policy == Policy.CLOCK) return clockVictim();
+        CacheItem sampled = sampleVictim();
+        if (policy == Policy.LRU) return sampled;
+        CacheItem admitted = candidate;
+        candidate = null;
+        if (admitted == null || admitted.removed) {
+            return sampled != null ? sampled : windowVictim();
+        }
+        if (sampled == null || sampled == admitted) return admitted;
+        //Допуск TinyLFU: из окна в основную часть проходит только более частый элемент
+        return sketch.frequency(admitted.hash) > sketch.frequency(sampled.hash) ? sampled : admitted;
+    }
+
+    private CacheItem windowVictim() {
+        while (!window.isEmpty()) {
+            CacheItem item = window.pollFirst();
+            item.inWindow = false;
+            if (!item.removed) return item;
+        }
+        return null;
+    }
+
+    //Самый давний по обращению из SAMPLE_SIZE живых ячеек, начиная со случайной; просроченный - сразу
+    private CacheItem sampleVictim() {
+        Item<K, V>[] slots = slots();
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        int index = (int) Math.floorMod(random, (long) slots.length);
+        long now = expiring ? ticker.getAsLong() : 0;
+        CacheItem victim = null;
+        int sampled = 0;
+        for (int i = 0; i < slots.length && sampled < SAMPLE_SIZE; i++) {
+            if (slots[index] instanceof CachingHashTable<?, ?>.CacheItem) {
+                CacheItem item = (CacheItem) slots[index];
+                if (!item.inWindow) {
+                    if (expiring && item.isExpired(now)) return item;
+                    if (victim == null || item.accessed < victim.accessed) victim = item;
+                    sampled++;
+                }
+            }
+            if (++index == slots.length) index = 0;
+        }
+        return victim;
+    }
+
+    //Стрелка сбрасывает бит обращения, жертва - первый элемент без него
+    private CacheItem clockVictim() {
+        Item<K, V>[] slots = slots();
+        long now = expiring ? ticker.getAsLong() : 0;
+        for (int i = 0; i <= 2 * slots.length; i++) {
+            if (++hand >= slots.length) hand = 0;
+            if (slots[hand] instanceof CachingHashTable<?, ?>.CacheItem) {
+                CacheItem item = (CacheItem) slots[hand];
+                if (!item.referenced || (expiring && item.isExpired(now))) return item;
+                item.referenced = false;
+            }
+        }
+        return null;
+    }
+
+    //Count-min sketch с 4-битными счётчиками; при накоплении 10 * ширина добавлений счётчики делятся пополам,
+    //чтобы старая популярность забывалась
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        FrequencySketch(long maximum) {
+            int size = (int) Math.min(Math.max(maximum, 16), 1 << 24);
+            size = Integer.highestOneBit(size - 1) << 1;
+            table = new long[size];
+            mask = size - 1;
+            sampleSize = 10 * size;
+        }
+
+        private static int indexHash(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            return (int) (h ^ (h >>> 32));
+        }
+
+        int frequency(int hash) {
+            int min = 15;
+            for (int i = 0; i < 4; i++) {
+                int h = indexHash(hash, i);
+                int shift = ((h >>> 24) & 15) << 2;
+                min = Math.min(min, (int) ((table[h & mask] >>> shift) & 15));
+            }
+            return min;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int h = indexHash(hash, i);
+                int shift = ((h >>> 24) & 15) << 2;
+                int index = h & mask;
+                if (((table[index] >>> shift) & 15) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+                }
+                additions /= 2;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//Сериализация ключей и значений для таблиц вне кучи.
+//write пишет с текущей позиции буфера, read читает length байт с текущей позиции.
+//Прочитанный ключ должен быть равен записанному и иметь тот же hashCode()
+public interface Codec<T> {
+    void write(T value, ByteBuffer out);
+
+    T read(ByteBuffer in, int length);
+
+    Codec<Integer> INTEGER = new Codec<>() {
+        public void write(Integer value, ByteBuffer out) {
+            out.putInt(value);
+        }
+
+        public Integer read(ByteBuffer in, int length) {
+            return in.getInt();
+        }
+    };
+
+    Codec<Long> LONG = new Codec<>() {
+        public void write(Long value, ByteBuffer out) {
+            out.putLong(value);
+        }
+
+        public Long read(ByteBuffer in, int length) {
+            return in.getLong();
+        }
+    };
+
+    Codec<String> STRING = new Codec<>() {
+        public void write(String value, ByteBuffer out) {
+            out.put(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public String read(ByteBuffer in, int length) {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+}
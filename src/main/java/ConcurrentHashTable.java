@@ -0,0 +1,637 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+//Потокобезопасная хеш-таблица с открытой адресацией. Таблица разбита на сегменты
+//со своими блокировками и своим расширением, чтение идёт без блокировок
+public class ConcurrentHashTable<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    private static final int CONST = 17;
+    private static final int MAX_SEGMENTS = 1 << 16;
+    //Метка удалённой ячейки
+    private static final Node<?, ?> DELETED = new Node<>(null, null, 0);
+    private final Segment<K, V>[] segments;
+    private final int segmentShift;
+    private Set<K> keySet;
+    private Set<Map.Entry<K, V>> entrySet;
+    private Collection<V> values;
+
+    public ConcurrentHashTable(int capacity, float loadFactor, int concurrencyLevel) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Неправильный размер " + capacity);
+        }
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Неправильный коэффициент " + loadFactor);
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Неправильное число сегментов " + concurrencyLevel);
+        }
+        int segmentCount = 1;
+        while (segmentCount < Math.min(concurrencyLevel, MAX_SEGMENTS)) {
+            segmentCount <<= 1;
+        }
+        segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        //Массив параметризованного типа создать нельзя, создаётся массив Segment и приводится к Segment<K, V>[]
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        Segment<K, V>[] segments = new Segment[segmentCount];
+        this.segments = segments;
+        //Ёмкость сегмента простая, как в HashTable: иначе шаг двойного хеширования может не обойти все ячейки
+        int segmentCapacity = HashTable.initialCapacity(Math.max(capacity / segmentCount, 1), HashTable.Addressing.MODULO);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentCapacity, loadFactor);
+        }
+    }
+
+    public ConcurrentHashTable(int capacity, float loadFactor) {
+        this(capacity, loadFactor, 16);
+    }
+
+    public ConcurrentHashTable(int capacity) {
+        this(capacity, 0.75f);
+    }
+
+    public ConcurrentHashTable() {
+        this(16, 0.75f);
+    }
+
+    //Финализатор fmix32: старшие биты выбирают сегмент, весь хеш - ячейку внутри сегмента
+    private static int spread(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int hashFunction1(int hash, int capacity) {
+        return Math.abs((hash * CONST) % capacity);
+    }
+
+    private static int hashFunction2(int hash, int capacity) {
+        int step = Math.abs(((hash * CONST) + 1) % capacity);
+        return step == 0 ? 1 : step;
+    }
+
+    private Segment<K, V> segmentFor(int hash) {
+        return segments[segmentShift == 32 ? 0 : hash >>> segmentShift];
+    }
+
+    static final class Node<K, V> {
+        final K key;
+        final int hash;
+        volatile V value;
+
+        Node(K key, V value, int hash) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+        }
+    }
+
+    //Сегмент - обычная таблица с двойным хешированием. Массив публикуется через volatile,
+    //ячейки читаются и пишутся через AtomicReferenceArray, изменения идут под блокировкой
+    private static final class Segment<K, V> extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+        private final float loadFactor;
+        volatile AtomicReferenceArray<Node<K, V>> table;
+        volatile int count;
+        int deleted;  //Число удалённых ячеек, меняется под блокировкой
+
+        Segment(int capacity, float loadFactor) {
+            this.loadFactor = loadFactor;
+            this.table = new AtomicReferenceArray<>(capacity);
+        }
+
+        //Чтение без блокировки
+        Node<K, V> find(Object key, int hash) {
+            AtomicReferenceArray<Node<K, V>> tab = table;
+            int index = findIndex(tab, key, hash);
+            return index == -1 ? null : tab.get(index);
+        }
+
+        static <K, V> int findIndex(AtomicReferenceArray<Node<K, V>> tab, Object key, int hash) {
+            int capacity = tab.length();
+            int index = hashFunction1(hash, capacity);
+            int step = hashFunction2(hash, capacity);
+            for (int i = 0; i < capacity; i++) {
+                Node<K, V> node = tab.get(index);
+                if (node == null) {
+                    return -1;
+                }
+                if (node.hash == hash && node != DELETED && node.key.equals(key)) {
+                    return index;
+                }
+                index += step;
+                if (index >= capacity) index -= capacity;
+            }
+            return -1;
+        }
+
+        static <K, V> int freeIndex(AtomicReferenceArray<Node<K, V>> tab, int hash) {
+            int capacity = tab.length();
+            int index = hashFunction1(hash, capacity);
+            int step = hashFunction2(hash, capacity);
+            for (int i = 0; i < capacity; i++) {
+                Node<K, V> node = tab.get(index);
+                if (node == null || node == DELETED) {
+                    return index;
+                }
+                index += step;
+                if (index >= capacity) index -= capacity;
+            }
+            return -1;
+        }
+
+        //Далее только под блокировкой сегмента
+        void insert(Node<K, V> node) {
+            AtomicReferenceArray<Node<K, V>> tab = table;
+            int index = freeIndex(tab, node.hash);
+            while (index == -1) {
+                resize(nextCapacity(tab.length()));
+                tab = table;
+                index = freeIndex(tab, node.hash);
+            }
+            if (tab.get(index) == DELETED) deleted--;
+            tab.set(index, node);
+            int size = count + 1;
+            count = size;
+            int capacity = tab.length();
+            if ((loadFactor * capacity) <= size) {
+                resize(nextCapacity(capacity));
+            } else if ((loadFactor * capacity) <= size + deleted) {
+                resize(capacity);
+            }
+        }
+
+        //DELETED - общая метка для всех типов, в ячейку она попадает только как Node<K, V>
+        @SuppressWarnings("unchecked")
+        void removeAt(int index) {
+            table.set(index, (Node<K, V>) DELETED);
+            deleted++;
+            count = count - 1;
+        }
+
+        //Новый массив заполняется целиком и только потом публикуется для читателей
+        void resize(int newCapacity) {
+            AtomicReferenceArray<Node<K, V>> old = table;
+            while (true) {
+                AtomicReferenceArray<Node<K, V>> tab = new AtomicReferenceArray<>(newCapacity);
+                if (moveNodes(old, tab)) {
+                    deleted = 0;
+                    table = tab;
+                    return;
+                }
+                newCapacity = nextCapacity(newCapacity);
+            }
+        }
+
+        private static <K, V> boolean moveNodes(AtomicReferenceArray<Node<K, V>> from, AtomicReferenceArray<Node<K, V>> to) {
+            for (int i = 0; i < from.length(); i++) {
+                Node<K, V> node = from.get(i);
+                if (node != null && node != DELETED) {
+                    int index = freeIndex(to, node.hash);
+                    if (index == -1) {
+                        return false;
+                    }
+                    to.lazySet(index, node);
+                }
+            }
+            return true;
+        }
+
+        void clear() {
+            lock();
+            try {
+                table = new AtomicReferenceArray<>(table.length());
+                deleted = 0;
+                count = 0;
+            } finally {
+                unlock();
+            }
+        }
+    }
+
+    private static int nextCapacity(int capacity) {
+        return HashTable.nextCapacity(capacity, HashTable.Addressing.MODULO);
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.count;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Segment<K, V> segment : segments) {
+            if (segment.count != 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        int hash = spread(key);
+        return segmentFor(hash).find(key, hash) != null;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null) throw new NullPointerException("Значение не может быть null");
+        for (Segment<K, V> segment : segments) {
+            AtomicReferenceArray<Node<K, V>> tab = segment.table;
+            for (int i = 0; i < tab.length(); i++) {
+                Node<K, V> node = tab.get(i);
+                if (node != null && node != DELETED && value.equals(node.value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        int hash = spread(key);
+        Node<K, V> node = segmentFor(hash).find(key, hash);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+        int hash = spread(key);
+        Segment<K, V> segment = segmentFor(hash);
+        segment.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> tab = segment.table;
+            int index = Segment.findIndex(tab, key, hash);
+            if (index != -1) {
+                Node<K, V> node = tab.get(index);
+                V oldValue = node.value;
+                if (!onlyIfAbsent) node.value = value;
+                return oldValue;
+            }
+            segment.insert(new Node<>(key, value, hash));
+            return null;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        return remove(key, null, spread(key));
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        return value != null && remove(key, value, spread(key)) != null;
+    }
+
+    //Удаление ключа; если expected не null, то только при совпадении значения
+    private V remove(Object key, Object expected, int hash) {
+        Segment<K, V> segment = segmentFor(hash);
+        segment.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> tab = segment.table;
+            int index = Segment.findIndex(tab, key, hash);
+            if (index == -1) return null;
+            V oldValue = tab.get(index).value;
+            if (expected != null && !expected.equals(oldValue)) return null;
+            segment.removeAt(index);
+            return oldValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (key == null || oldValue == null || newValue == null)
+            throw new NullPointerException("Ключ или значение не могут быть null");
+        int hash = spread(key);
+        Segment<K, V> segment = segmentFor(hash);
+        segment.lock();
+        try {
+            Node<K, V> node = segment.find(key, hash);
+            if (node == null || !oldValue.equals(node.value)) return false;
+            node.value = newValue;
+            return true;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+        int hash = spread(key);
+        Segment<K, V> segment = segmentFor(hash);
+        segment.lock();
+        try {
+            Node<K, V> node = segment.find(key, hash);
+            if (node == null) return null;
+            V oldValue = node.value;
+            node.value = value;
+            return oldValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    //Функции вызываются под блокировкой сегмента и не должны менять эту таблицу
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (key == null || mappingFunction == null)
+            throw new NullPointerException("Ключ или функция не может быть null");
+        int hash = spread(key);
+        Segment<K, V> segment = segmentFor(hash);
+        Node<K, V> node = segment.find(key, hash);
+        if (node != null) return node.value;
+        segment.lock();
+        try {
+            node = segment.find(key, hash);
+            if (node != null) return node.value;
+            V newValue = mappingFunction.apply(key);
+            if (newValue != null) {
+                segment.insert(new Node<>(key, newValue, hash));
+            }
+            return newValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (key == null || remappingFunction == null)
+            throw new NullPointerException("Ключ или функция не может быть null");
+        int hash = spread(key);
+        Segment<K, V> segment = segmentFor(hash);
+        segment.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> tab = segment.table;
+            int index = Segment.findIndex(tab, key, hash);
+            if (index == -1) return null;
+            Node<K, V> node = tab.get(index);
+            V newValue = remappingFunction.apply(key, node.value);
+            if (newValue == null) {
+                segment.removeAt(index);
+            } else {
+                node.value = newValue;
+            }
+            return newValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (key == null || remappingFunction == null)
+            throw new NullPointerException("Ключ или функция не может быть null");
+        int hash = spread(key);
+        Segment<K, V> segment = segmentFor(hash);
+        segment.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> tab = segment.table;
+            int index = Segment.findIndex(tab, key, hash);
+            Node<K, V> node = index == -1 ? null : tab.get(index);
+            V newValue = remappingFunction.apply(key, node == null ? null : node.value);
+            if (node == null) {
+                if (newValue != null) segment.insert(new Node<>(key, newValue, hash));
+            } else if (newValue == null) {
+                segment.removeAt(index);
+            } else {
+                node.value = newValue;
+            }
+            return newValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (key == null || value == null || remappingFunction == null)
+            throw new NullPointerException("Ключ, значение или функция не может быть null");
+        int hash = spread(key);
+        Segment<K, V> segment = segmentFor(hash);
+        segment.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> tab = segment.table;
+            int index = Segment.findIndex(tab, key, hash);
+            if (index == -1) {
+                segment.insert(new Node<>(key, value, hash));
+                return value;
+            }
+            Node<K, V> node = tab.get(index);
+            V newValue = remappingFunction.apply(node.value, value);
+            if (newValue == null) {
+                segment.removeAt(index);
+            } else {
+                node.value = newValue;
+            }
+            return newValue;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        if (keySet == null) {
+            keySet = new AbstractSet<>() {
+                public Iterator<K> iterator() {
+                    return new NodeIterator<>() {
+                        K element(Node<K, V> node) {
+                            return node.key;
+                        }
+                    };
+                }
+
+                public int size() {
+                    return ConcurrentHashTable.this.size();
+                }
+
+                public boolean contains(Object o) {
+                    return containsKey(o);
+                }
+
+                public boolean remove(Object o) {
+                    return ConcurrentHashTable.this.remove(o) != null;
+                }
+
+                public void clear() {
+                    ConcurrentHashTable.this.clear();
+                }
+            };
+        }
+        return keySet;
+    }
+
+    @Override
+    public Collection<V> values() {
+        if (values == null) {
+            values = new AbstractCollection<>() {
+                public Iterator<V> iterator() {
+                    return new NodeIterator<>() {
+                        V element(Node<K, V> node) {
+                            return node.value;
+                        }
+                    };
+                }
+
+                public int size() {
+                    return ConcurrentHashTable.this.size();
+                }
+
+                public boolean contains(Object o) {
+                    return containsValue(o);
+                }
+
+                public void clear() {
+                    ConcurrentHashTable.this.clear();
+                }
+            };
+        }
+        return values;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new NodeIterator<>() {
+                        Map.Entry<K, V> element(Node<K, V> node) {
+                            return new Entry(node.key, node.value);
+                        }
+                    };
+                }
+
+                public int size() {
+                    return ConcurrentHashTable.this.size();
+                }
+
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry<?, ?> e) || e.getKey() == null) return false;
+                    V value = get(e.getKey());
+                    return value != null && value.equals(e.getValue());
+                }
+
+                public boolean remove(Object o) {
+                    return o instanceof Map.Entry<?, ?> e && e.getKey() != null
+                            && ConcurrentHashTable.this.remove(e.getKey(), e.getValue());
+                }
+
+                public void clear() {
+                    ConcurrentHashTable.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    //Слабо согласованный обход: не бросает ConcurrentModificationException,
+    //видит массивы сегментов на момент перехода к ним
+    private abstract class NodeIterator<T> implements Iterator<T> {
+        int segmentIndex = 0;
+        int index = 0;
+        AtomicReferenceArray<Node<K, V>> tab = segments[0].table;
+        Node<K, V> next;
+        Node<K, V> last;
+
+        NodeIterator() {
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (true) {
+                while (index < tab.length()) {
+                    Node<K, V> node = tab.get(index++);
+                    if (node != null && node != DELETED) {
+                        next = node;
+                        return;
+                    }
+                }
+                if (++segmentIndex == segments.length) return;
+                tab = segments[segmentIndex].table;
+                index = 0;
+            }
+        }
+
+        abstract T element(Node<K, V> node);
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) throw new NoSuchElementException();
+            last = next;
+            advance();
+            return element(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) throw new IllegalStateException();
+            ConcurrentHashTable.this.remove(last.key);
+            last = null;
+        }
+    }
+
+    private class Entry extends AbstractMap.SimpleEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        Entry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null) throw new NullPointerException("Значение не может быть null");
+            V oldValue = super.setValue(value);
+            put(getKey(), value);
+            return oldValue;
+        }
+    }
+}
@@ -0,0 +1,678 @@
+import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+//HashTable с журналом упреждающей записи в каталоге: каждое изменение дописывается в лог-файл,
+//после сбоя таблица восстанавливается из последнего снимка и записей лога после него.
+//Чтение идёт из памяти. Все методы синхронизированы на таблице, обход представлений - под synchronized(table)
+public class DurableHashTable<K, V> extends AbstractMap<K, V> implements Closeable {
+    //Запись лога: int длина тела, int CRC32C тела, тело: байт операции, int длина ключа, ключ, значение
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String LOG_PREFIX = "log-";
+    private static final String LOG_SUFFIX = ".wal";
+    //В режиме с интервалом буфер сбрасывается раньше срока, если вырос больше этого
+    private static final int MAX_PENDING_BYTES = 1 << 20;
+    private final Path dir;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    //0 - fsync перед возвратом из каждого изменения (групповой), иначе fsync в фоне раз в интервал
+    private final long syncIntervalMillis;
+    //Размер лога, после которого в фоне делается снимок и лог начинается заново
+    private final long compactionBytes;
+    private final HashTable<K, V> table;
+    private final ScheduledExecutorService background;
+    private final Object syncLock = new Object();
+    private final Object checkpointLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);  //Записи, ещё не отданные в файл
+    private ByteBuffer flushing = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private final CRC32C crc = new CRC32C();
+    private long appendedSeq = 0;  //Номер последней записи в pending
+    private long durableSeq = 0;  //Номер последней записи, сохранённой на диск
+    private FileChannel log;
+    private long generation;  //Номер текущего лог-файла
+    private volatile long logBytes;
+    private volatile boolean checkpointScheduled = false;
+    private volatile IOException failure;
+    private volatile boolean closed = false;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    public DurableHashTable(Path dir, Codec<K> keyCodec, Codec<V> valueCodec, long syncIntervalMillis, long compactionBytes) throws IOException {
+        if (syncIntervalMillis < 0) {
+            throw new IllegalArgumentException("Неправильный интервал " + syncIntervalMillis);
+        }
+        if (compactionBytes <= 0) {
+            throw new IllegalArgumentException("Неправильный размер лога " + compactionBytes);
+        }
+        this.dir = Files.createDirectories(dir);
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.compactionBytes = compactionBytes;
+        this.table = recover();
+        background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DurableHashTable " + dir);
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (syncIntervalMillis > 0) {
+            background.scheduleWithFixedDelay(this::backgroundSync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public DurableHashTable(Path dir, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this(dir, keyCodec, valueCodec, 0, 64L << 20);
+    }
+
+    //Восстановление
+
+    private Path snapshotPath(long generation) {
+        return dir.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX);
+    }
+
+    private Path logPath(long generation) {
+        return dir.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+    }
+
+    //Номера файлов вида prefix<номер>suffix по возрастанию
+    private List<Long> generations(String prefix, String suffix) throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    try {
+                        result.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                    } catch (NumberFormatException e) {
+                        //Чужой файл
+                    }
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    //Снимок с номером n содержит состояние до лога n, поэтому после него применяются логи с номерами >= n
+    private HashTable<K, V> recover() throws IOException {
+        HashTable<K, V> recovered = new HashTable<>();
+        List<Long> snapshots = generations(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long snapshot = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+        if (!snapshots.isEmpty()) {
+            try (MappedHashTable<K, V> mapped = MappedHashTable.open(snapshotPath(snapshot), keyCodec, valueCodec)) {
+                recovered.ensureCapacity(mapped.size());
+                recovered.putAll(mapped);
+            }
+        }
+        List<Long> logs = generations(LOG_PREFIX, LOG_SUFFIX);
+        logs.removeIf(g -> g < snapshot);
+        for (int i = 0; i < logs.size(); i++) {
+            long end = replay(logPath(logs.get(i)), recovered);
+            long length = Files.size(logPath(logs.get(i)));
+            if (end != length) {
+                if (i != logs.size() - 1) throw new IOException("Повреждён лог " + logPath(logs.get(i)));
+                //Недописанная при сбое запись в конце последнего лога отбрасывается
+                try (FileChannel channel = FileChannel.open(logPath(logs.get(i)), StandardOpenOption.WRITE)) {
+                    channel.truncate(end);
+                    channel.force(true);
+                }
+            }
+        }
+        generation = logs.isEmpty() ? snapshot : logs.get(logs.size() - 1);
+        log = FileChannel.open(logPath(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        //log.force не сохраняет запись каталога: без этого новый лог может пропасть при сбое вместе с записями
+        MappedHashTable.syncDirectory(dir);
+        logBytes = log.size();
+        return recovered;
+    }
+
+    //Применение записей лога, возвращает смещение после последней целой записи
+    private long replay(Path file, HashTable<K, V> target) throws IOException {
+        long position = 0;
+        long fileSize = Files.size(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                int length;
+                int checksum;
+                byte[] body;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > fileSize - position - RECORD_HEADER_SIZE) return position;
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    return position;
+                }
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) return position;
+                apply(ByteBuffer.wrap(body), target);
+                position += RECORD_HEADER_SIZE + length;
+            }
+        }
+    }
+
+    private void apply(ByteBuffer body, HashTable<K, V> target) {
+        byte op = body.get();
+        if (op == CLEAR) {
+            target.clear();
+            return;
+        }
+        int keyLength = body.getInt();
+        int valueStart = body.position() + keyLength;
+        ByteBuffer in = body.duplicate();
+        in.limit(valueStart);
+        K key = keyCodec.read(in, keyLength);
+        if (op == PUT) {
+            body.position(valueStart);
+            target.put(key, valueCodec.read(body, body.remaining()));
+        } else {
+            target.remove(key);
+        }
+    }
+
+    //Запись в лог
+
+    //Постановка закодированной записи в очередь, вызывается под synchronized(this) после изменения таблицы.
+    //Возвращает номер записи
+    private long append(ByteBuffer body) {
+        int length = RECORD_HEADER_SIZE + body.remaining();
+        if (pending.remaining() < length) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + length));
+            pending.flip();
+            pending = bigger.put(pending);
+        }
+        crc.reset();
+        crc.update(body.duplicate());
+        pending.putInt(body.remaining()).putInt((int) crc.getValue()).put(body);
+        return ++appendedSeq;
+    }
+
+    //Копия записи из общего буфера scratch, для операций из нескольких записей
+    private static ByteBuffer copy(ByteBuffer record) {
+        return ByteBuffer.allocate(record.remaining()).put(record).flip();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ByteBuffer encode(byte op, Object key, V value) {
+        while (true) {
+            scratch.clear();
+            try {
+                scratch.put(op);
+                if (op != CLEAR) {
+                    int start = scratch.position();
+                    scratch.putInt(0);
+                    keyCodec.write((K) key, scratch);
+                    scratch.putInt(start, scratch.position() - start - 4);
+                    if (value != null) valueCodec.write(value, scratch);
+                }
+                return scratch.flip();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    //Вызывается без блокировки таблицы после изменения с номером seq
+    private void commit(long seq) {
+        if (seq == 0) return;
+        boolean mustSync;
+        synchronized (this) {
+            mustSync = syncIntervalMillis == 0 || pending.position() >= MAX_PENDING_BYTES;
+        }
+        if (mustSync) {
+            try {
+                sync(seq);
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException(e);
+            }
+        }
+        scheduleCheckpoint();
+    }
+
+    //Групповая запись: поток, захвативший syncLock, сохраняет все накопленные записи одним fsync,
+    //остальные ждущие потоки находят свои записи уже сохранёнными
+    private void sync(long seq) throws IOException {
+        synchronized (syncLock) {
+            if (durableSeq >= seq) return;
+            long upTo;
+            synchronized (this) {
+                ByteBuffer batch = pending;
+                pending = flushing;
+                flushing = batch;
+                upTo = appendedSeq;
+            }
+            flushing.flip();
+            logBytes += flushing.remaining();
+            while (flushing.hasRemaining()) {
+                log.write(flushing);
+            }
+            flushing.clear();
+            log.force(false);
+            durableSeq = upTo;
+        }
+    }
+
+    //Все изменения, сделанные до вызова, сохраняются на диск
+    public void sync() throws IOException {
+        long seq;
+        synchronized (this) {
+            seq = appendedSeq;
+        }
+        sync(seq);
+    }
+
+    private void backgroundSync() {
+        try {
+            sync();
+        } catch (IOException e) {
+            failure = e;
+        }
+        scheduleCheckpoint();
+    }
+
+    private void checkFailure() {
+        if (closed) throw new IllegalStateException("Таблица закрыта");
+        if (failure != null) throw new UncheckedIOException("Ошибка записи лога", failure);
+    }
+
+    //Снимок и сжатие лога
+
+    private void scheduleCheckpoint() {
+        if (checkpointScheduled || logBytes < compactionBytes) return;
+        synchronized (syncLock) {
+            if (checkpointScheduled || logBytes < compactionBytes || closed) return;
+            checkpointScheduled = true;
+        }
+        background.execute(() -> {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                failure = e;
+            } catch (IllegalStateException e) {
+                //Таблица закрыта
+            }
+        });
+    }
+
+    //Лог начинается заново, копия таблицы сохраняется снимком вне блокировок,
+    //после чего старые снимки и логи удаляются
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            HashTable<K, V> copy;
+            long snapshot;
+            synchronized (syncLock) {
+                synchronized (this) {
+                    checkFailure();
+                    pending.flip();
+                    while (pending.hasRemaining()) {
+                        log.write(pending);
+                    }
+                    pending.clear();
+                    log.force(false);
+                    durableSeq = appendedSeq;
+                    copy = new HashTable<>(table);
+                    snapshot = generation + 1;
+                    FileChannel next = FileChannel.open(logPath(snapshot), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    //Имя нового лога сохраняется до того, как в него попадут подтверждённые записи
+                    MappedHashTable.syncDirectory(dir);
+                    log.close();
+                    log = next;
+                    generation = snapshot;
+                    logBytes = 0;
+                    checkpointScheduled = false;
+                }
+            }
+            copy.save(snapshotPath(snapshot), keyCodec, valueCodec);
+            //Порядок важен: переименование снимка должно попасть на диск раньше удалений,
+            //иначе после сбоя могут остаться удалёнными старые файлы без нового снимка
+            MappedHashTable.syncDirectory(dir);
+            for (long g : generations(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                if (g < snapshot) Files.deleteIfExists(snapshotPath(g));
+            }
+            for (long g : generations(LOG_PREFIX, LOG_SUFFIX)) {
+                if (g < snapshot) Files.deleteIfExists(logPath(g));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        //Фоновый снимок, если он уже запущен, успевает завершиться
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (checkpointLock) {
+            if (closed) return;
+            try {
+                if (failure == null) sync();
+            } finally {
+                closed = true;
+                log.close();
+            }
+        }
+    }
+
+    //Операции Map: изменение таблицы и запись лога под одной блокировкой, ожидание fsync - вне её
+
+    @Override
+    public synchronized int size() {
+        return table.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return table.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return table.containsKey(key);
+    }
+
+    @Override
+    public synchronized boolean containsValue(Object value) {
+        return table.containsValue(value);
+    }
+
+    @Override
+    public synchronized V get(Object key) {
+        return table.get(key);
+    }
+
+    @Override
+    public synchronized V getOrDefault(Object key, V defaultValue) {
+        return table.getOrDefault(key, defaultValue);
+    }
+
+    //Запись кодируется до изменения таблицы: если кодек бросит исключение, таблица останется прежней
+    //и не разойдётся с логом. encode пишет в общий буфер, поэтому между encode и append другой записи нет
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+        long seq;
+        V oldValue;
+        synchronized (this) {
+            checkFailure();
+            ByteBuffer record = encode(PUT, key, value);
+            oldValue = table.put(key, value);
+            seq = append(record);
+        }
+        commit(seq);
+        return oldValue;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        long seq = 0;
+        synchronized (this) {
+            checkFailure();
+            List<ByteBuffer> records = new ArrayList<>(m.size());
+            for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) {
+                    throw new NullPointerException("Ключ или значение не могут быть null");
+                }
+                records.add(copy(encode(PUT, entry.getKey(), entry.getValue())));
+            }
+            table.putAll(m);
+            for (ByteBuffer record : records) {
+                seq = append(record);
+            }
+        }
+        commit(seq);
+    }
+
+    @Override
+    public V remove(Object key) {
+        long seq = 0;
+        V removed = null;
+        synchronized (this) {
+            checkFailure();
+            if (table.containsKey(key)) {
+                ByteBuffer record = encode(REMOVE, key, null);
+                removed = table.remove(key);
+                seq = append(record);
+            }
+        }
+        commit(seq);
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        long seq;
+        synchronized (this) {
+            checkFailure();
+            ByteBuffer record = encode(CLEAR, null, null);
+            table.clear();
+            seq = append(record);
+        }
+        commit(seq);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+        long seq = 0;
+        V current;
+        synchronized (this) {
+            checkFailure();
+            current = table.get(key);
+            if (current == null) {
+                ByteBuffer record = encode(PUT, key, value);
+                table.put(key, value);
+                seq = append(record);
+            }
+        }
+        commit(seq);
+        return current;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+        long seq = 0;
+        synchronized (this) {
+            checkFailure();
+            V current = table.get(key);
+            if (current != null && current.equals(value)) {
+                ByteBuffer record = encode(REMOVE, key, null);
+                table.remove(key);
+                seq = append(record);
+            }
+        }
+        commit(seq);
+        return seq != 0;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (newValue == null || oldValue == null || key == null)
+            throw new NullPointerException("Значение не может быть null");
+        long seq = 0;
+        synchronized (this) {
+            checkFailure();
+            V current = table.get(key);
+            if (current != null && current.equals(oldValue)) {
+                ByteBuffer record = encode(PUT, key, newValue);
+                table.put(key, newValue);
+                seq = append(record);
+            }
+        }
+        commit(seq);
+        return seq != 0;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+        long seq = 0;
+        V oldValue;
+        synchronized (this) {
+            checkFailure();
+            oldValue = table.get(key);
+            if (oldValue != null) {
+                ByteBuffer record = encode(PUT, key, value);
+                table.put(key, value);
+                seq = append(record);
+            }
+        }
+        commit(seq);
+        return oldValue;
+    }
+
+    //Функции вычисляются до изменения таблицы, в лог пишется их результат, а не сама функция.
+    //Вызывается под synchronized(this), возвращает номер записи или 0, если таблица не изменилась
+    private long applyResult(K key, V oldValue, V newValue) {
+        if (newValue != null) {
+            if (newValue == oldValue) return 0;
+            ByteBuffer record = encode(PUT, key, newValue);
+            table.put(key, newValue);
+            return append(record);
+        }
+        if (oldValue == null) return 0;
+        ByteBuffer record = encode(REMOVE, key, null);
+        table.remove(key);
+        return append(record);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (key == null || mappingFunction == null)
+            throw new NullPointerException("Ключ или функция не может быть null");
+        long seq;
+        V value;
+        synchronized (this) {
+            checkFailure();
+            value = table.get(key);
+            if (value != null) return value;
+            value = mappingFunction.apply(key);
+            if (value == null) throw new NullPointerException("Новое значение не может быть null");
+            seq = applyResult(key, null, value);
+        }
+        commit(seq);
+        return value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (key == null || remappingFunction == null)
+            throw new NullPointerException("Ключ или функция не может быть null");
+        long seq;
+        V value;
+        synchronized (this) {
+            checkFailure();
+            V oldValue = table.get(key);
+            if (oldValue == null) return null;
+            value = remappingFunction.apply(key, oldValue);
+            if (value == null) throw new NullPointerException("Новое значение не может быть null");
+            seq = applyResult(key, oldValue, value);
+        }
+        commit(seq);
+        return value;
+    }
+
+    //Как HashTable.compute: для отсутствующего ключа функция вызывается, но ничего не вставляется
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (key == null || remappingFunction == null)
+            throw new NullPointerException("Ключ или функция не может быть null");
+        long seq;
+        V value;
+        synchronized (this) {
+            checkFailure();
+            V oldValue = table.get(key);
+            value = remappingFunction.apply(key, oldValue);
+            if (oldValue == null) return null;
+            seq = applyResult(key, oldValue, value);
+        }
+        commit(seq);
+        return value;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (key == null || value == null || remappingFunction == null)
+            throw new NullPointerException("Ключ, значение или функция не может быть null");
+        long seq;
+        V result;
+        synchronized (this) {
+            checkFailure();
+            V oldValue = table.get(key);
+            result = oldValue == null ? value : remappingFunction.apply(oldValue, value);
+            seq = applyResult(key, oldValue, result);
+        }
+        commit(seq);
+        return result;
+    }
+
+    //Новые значения вычисляются и кодируются для всех элементов, и только потом записываются в таблицу
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        long seq = 0;
+        synchronized (this) {
+            checkFailure();
+            Map<K, V> updated = new HashMap<>(table.size());
+            List<ByteBuffer> records = new ArrayList<>(table.size());
+            for (Map.Entry<K, V> entry : table.entrySet()) {
+                V newValue = function.apply(entry.getKey(), entry.getValue());
+                if (newValue == null) throw new NullPointerException("Новое значение не может быть null");
+                updated.put(entry.getKey(), newValue);
+                records.add(copy(encode(PUT, entry.getKey(), newValue)));
+            }
+            table.putAll(updated);
+            for (ByteBuffer record : records) {
+                seq = append(record);
+            }
+        }
+        commit(seq);
+    }
+
+    //Представление только для чтения: изменения в обход лога недопустимы
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = Collections.unmodifiableMap(table).entrySet();
+        }
+        return entrySet;
+    }
+
+    @Override
+    public synchronized boolean equals(Object o) {
+        return super.equals(o);
+    }
+
+    @Override
+    public synchronized int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return super.toString();
+    }
+}
@@ -0,0 +1,400 @@
+import java.util.*;
+import java.util.function.BiConsumer;
+
+//Хеш-таблица без объектов Item: ключ и значение лежат в соседних ячейках одного массива,
+//хеши ключей хранятся отдельно, чтобы отсеивать несовпадения без вызова equals()
+public class FlatHashTable<K, V> extends AbstractMap<K, V> {
+    private static final int CONST = 17;
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - 8) / 2;
+    //Метка удалённой ячейки на месте ключа
+    private static final Object DELETED = new Object();
+    private int size = 0;
+    private int deleted = 0;  //Число удалённых ячеек
+    private int capacity;  //Размерность таблицы
+    private final float loadFactor;  //Коэффициент заполнения
+    private Object[] table;  //table[2 * i] - ключ, table[2 * i + 1] - значение
+    private int[] hashes;
+    private int modCount = 0;
+    private Set<Map.Entry<K, V>> entrySet;
+    private Set<K> keySet;
+    private Collection<V> values;
+
+    public FlatHashTable(int capacity, float loadFactor) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Неправильный размер " + capacity);
+        }
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Неправильный коэффициент " + loadFactor);
+        }
+        this.capacity = capacity;
+        this.loadFactor = loadFactor;
+        table = new Object[capacity * 2];
+        hashes = new int[capacity];
+    }
+
+    public FlatHashTable(int capacity) {
+        this(capacity, 0.75f);
+    }
+
+    public FlatHashTable() {
+        this(16, 0.75f);
+    }
+
+    private static int hashFunction1(int hash, int capacity) {
+        return Math.abs((hash * CONST) % capacity);
+    }
+
+    private static int hashFunction2(int hash, int capacity) {
+        int step = Math.abs(((hash * CONST) + 1) % capacity);
+        return step == 0 ? 1 : step;
+    }
+
+    private int findIndex(Object key, int hash) {
+        int index = hashFunction1(hash, capacity);
+        int step = hashFunction2(hash, capacity);
+        for (int i = 0; i < capacity; i++) {
+            Object k = table[index * 2];
+            if (k == null) {
+                return -1;
+            }
+            if (hashes[index] == hash && k != DELETED && k.equals(key)) {
+                return index;
+            }
+            index += step;
+            if (index >= capacity) index -= capacity;
+        }
+        return -1;
+    }
+
+    private static int freeIndex(Object[] table, int hash) {
+        int capacity = table.length / 2;
+        int index = hashFunction1(hash, capacity);
+        int step = hashFunction2(hash, capacity);
+        for (int i = 0; i < capacity; i++) {
+            Object k = table[index * 2];
+            if (k == null || k == DELETED) {
+                return index;
+            }
+            index += step;
+            if (index >= capacity) index -= capacity;
+        }
+        return -1;
+    }
+
+    private void rehash(int newCapacity) {
+        while (true) {
+            Object[] newTable = new Object[newCapacity * 2];
+            int[] newHashes = new int[newCapacity];
+            if (moveItems(newTable, newHashes)) {
+                table = newTable;
+                hashes = newHashes;
+                capacity = newCapacity;
+                deleted = 0;
+                return;
+            }
+            newCapacity = nextCapacity(newCapacity);
+        }
+    }
+
+    private boolean moveItems(Object[] newTable, int[] newHashes) {
+        for (int i = 0; i < capacity; i++) {
+            Object k = table[i * 2];
+            if (k != null && k != DELETED) {
+                int index = freeIndex(newTable, hashes[i]);
+                if (index == -1) {
+                    return false;
+                }
+                newTable[index * 2] = k;
+                newTable[index * 2 + 1] = table[i * 2 + 1];
+                newHashes[index] = hashes[i];
+            }
+        }
+        return true;
+    }
+
+    private static int nextCapacity(int capacity) {
+        if (capacity >= MAX_CAPACITY / 2) {
+            if (capacity == MAX_CAPACITY) throw new IllegalStateException("Превышен максимальный размер таблицы");
+            return MAX_CAPACITY;
+        }
+        return capacity * 2 + 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyAt(int index) {
+        return (K) table[index * 2];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return (V) table[index * 2 + 1];
+    }
+
+    private boolean isFull(int index) {
+        Object k = table[index * 2];
+        return k != null && k != DELETED;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        return findIndex(key, key.hashCode()) != -1;
+    }
+
+    @Override
+    public V get(Object key) {
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        int index = findIndex(key, key.hashCode());
+        return index == -1 ? null : valueAt(index);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+        int hash = key.hashCode();
+        int index = findIndex(key, hash);
+        if (index != -1) {
+            V oldValue = valueAt(index);
+            table[index * 2 + 1] = value;
+            return oldValue;
+        }
+        index = freeIndex(table, hash);
+        while (index == -1) {
+            rehash(nextCapacity(capacity));
+            index = freeIndex(table, hash);
+        }
+        if (table[index * 2] == DELETED) deleted--;
+        table[index * 2] = key;
+        table[index * 2 + 1] = value;
+        hashes[index] = hash;
+        size++;
+        modCount++;
+        if ((loadFactor * capacity) <= size) {
+            rehash(nextCapacity(capacity));
+        } else if ((loadFactor * capacity) <= size + deleted) {
+            rehash(capacity);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        int index = findIndex(key, key.hashCode());
+        if (index == -1) return null;
+        V removed = valueAt(index);
+        removeAt(index);
+        return removed;
+    }
+
+    private void removeAt(int index) {
+        table[index * 2] = DELETED;
+        table[index * 2 + 1] = null;
+        deleted++;
+        size--;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(table, null);
+        size = 0;
+        deleted = 0;
+        modCount++;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        for (int i = 0; i < capacity; i++) {
+            if (isFull(i)) {
+                action.accept(keyAt(i), valueAt(i));
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        if (keySet == null) {
+            keySet = new AbstractSet<>() {
+                public Iterator<K> iterator() {
+                    return new SlotIterator<>() {
+                        K element(int index) {
+                            return keyAt(index);
+                        }
+                    };
+                }
+
+                public int size() {
+                    return size;
+                }
+
+                public boolean contains(Object o) {
+                    return containsKey(o);
+                }
+
+                public boolean remove(Object o) {
+                    return FlatHashTable.this.remove(o) != null;
+                }
+
+                public void clear() {
+                    FlatHashTable.this.clear();
+                }
+            };
+        }
+        return keySet;
+    }
+
+    @Override
+    public Collection<V> values() {
+        if (values == null) {
+            values = new AbstractCollection<>() {
+                public Iterator<V> iterator() {
+                    return new SlotIterator<>() {
+                        V element(int index) {
+                            return valueAt(index);
+                        }
+                    };
+                }
+
+                public int size() {
+                    return size;
+                }
+
+                public void clear() {
+                    FlatHashTable.this.clear();
+                }
+            };
+        }
+        return values;
+    }
+
+    //Объекты Map.Entry создаются только при обходе entrySet()
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new SlotIterator<>() {
+                        Map.Entry<K, V> element(int index) {
+                            return new Entry(index);
+                        }
+                    };
+                }
+
+                public int size() {
+                    return size;
+                }
+
+                public void clear() {
+                    FlatHashTable.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        int index = -1;
+        int next = advance(0);
+        int expectedModCount = modCount;
+
+        private int advance(int from) {
+            while (from < capacity && !isFull(from)) {
+                from++;
+            }
+            return from;
+        }
+
+        abstract T element(int index);
+
+        @Override
+        public boolean hasNext() {
+            return next < capacity;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (next >= capacity) throw new NoSuchElementException();
+            index = next;
+            next = advance(next + 1);
+            return element(index);
+        }
+
+        @Override
+        public void remove() {
+            if (index == -1 || !isFull(index)) throw new IllegalStateException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            removeAt(index);
+            expectedModCount = modCount;
+        }
+    }
+
+    private class Entry implements Map.Entry<K, V> {
+        private int index;
+        private final K key;
+        private V value;  //Последнее увиденное значение
+
+        Entry(int index) {
+            this.index = index;
+            this.key = keyAt(index);
+            this.value = valueAt(index);
+        }
+
+        //После перестройки таблицы запомненная ячейка устаревает, тогда ключ ищется заново.
+        //-1 - ключ удалён, запись хранит последнее значение, как отсоединённый Item в HashTable
+        private int locate() {
+            if (index == -1 || table[index * 2] != key) index = findIndex(key, key.hashCode());
+            return index;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            if (locate() != -1) value = valueAt(index);
+            return value;
+        }
+
+        //Удалённый ключ не вставляется заново
+        public V setValue(V value) {
+            if (value == null) throw new NullPointerException("Значение не может быть null");
+            V oldValue = getValue();
+            if (index != -1) table[index * 2 + 1] = value;
+            this.value = value;
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e && key.equals(e.getKey()) && getValue().equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ getValue().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + " = " + getValue();
+        }
+    }
+}
@@ -0,0 +1,369 @@
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+//Неизменяемая таблица с почти минимальной совершенной хеш-функцией (CHD: сжатие, хеш, смещение).
+//Ключи разбиваются на группы по хешу, для каждой группы подбирается смещение, при котором все её ключи
+//попадают в свободные ячейки. get читает смещение группы и одну ячейку, цепочек проб нет.
+//Ключи с одинаковым hashCode() не различить никакой функцией от него, поэтому в ячейку попадает первый из них,
+//а остальные хранятся в отдельном отсортированном массиве.
+//Все поля final и заполняются в конструкторе, так что таблицу можно передавать между потоками без синхронизации
+public final class FrozenHashTable<K, V> extends AbstractMap<K, V> {
+    //Среднее число ключей в группе
+    private static final int BUCKET_SIZE = 4;
+    //После стольких неудачных смещений для одной группы число ячеек увеличивается
+    private static final int MAX_DISPLACEMENT = 1 << 16;
+    private static final int GOLDEN = 0x9E3779B9;
+    private final int size;
+    private final int[] displacements;  //Смещение для каждой группы
+    private final int[] hashes;
+    private final Object[] keys;  //null - пустая ячейка
+    private final Object[] values;
+    //Ключи, чей hashCode() совпал с ключом в основной ячейке, по возрастанию хеша
+    private final int[] overflowHashes;
+    private final Object[] overflowKeys;
+    private final Object[] overflowValues;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    private FrozenHashTable(Object[] sourceKeys, Object[] sourceValues) {
+        int n = sourceKeys.length;
+        size = n;
+        //Ключи, упорядоченные по хешу: хеш в старших 32 битах, номер в младших
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (long) mix(sourceKeys[i].hashCode()) << 32 | i;
+        }
+        Arrays.sort(order);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || (int) (order[i] >>> 32) != (int) (order[i - 1] >>> 32)) unique++;
+        }
+        int[] uniqueIndexes = new int[unique];
+        overflowHashes = new int[n - unique];
+        overflowKeys = new Object[n - unique];
+        overflowValues = new Object[n - unique];
+        for (int i = 0, u = 0, o = 0; i < n; i++) {
+            int index = (int) order[i];
+            if (i == 0 || (int) (order[i] >>> 32) != (int) (order[i - 1] >>> 32)) {
+                uniqueIndexes[u++] = index;
+            } else {
+                overflowHashes[o] = (int) (order[i] >>> 32);
+                overflowKeys[o] = sourceKeys[index];
+                overflowValues[o++] = sourceValues[index];
+            }
+        }
+        int buckets = Math.max(1, unique / BUCKET_SIZE);
+        int slots = Math.max(1, unique + (unique >>> 5));
+        int[] uniqueHashes = new int[unique];
+        for (int i = 0; i < unique; i++) {
+            uniqueHashes[i] = mix(sourceKeys[uniqueIndexes[i]].hashCode());
+        }
+        int[] displacements = new int[buckets];
+        int[] positions;
+        while ((positions = place(uniqueHashes, displacements, slots)) == null) {
+            slots += (slots >>> 3) + 1;
+        }
+        this.displacements = displacements;
+        hashes = new int[slots];
+        keys = new Object[slots];
+        values = new Object[slots];
+        for (int i = 0; i < unique; i++) {
+            int slot = positions[i];
+            hashes[slot] = uniqueHashes[i];
+            keys[slot] = sourceKeys[uniqueIndexes[i]];
+            values[slot] = sourceValues[uniqueIndexes[i]];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> FrozenHashTable<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map == null) throw new NullPointerException("Map не может быть null");
+        if (map instanceof FrozenHashTable) {
+            return (FrozenHashTable<K, V>) map;
+        }
+        Object[] keys = new Object[map.size()];
+        Object[] values = new Object[keys.length];
+        int n = 0;
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                throw new NullPointerException("Ключ или значение не могут быть null");
+            }
+            if (n == keys.length) throw new ConcurrentModificationException();
+            keys[n] = entry.getKey();
+            values[n++] = entry.getValue();
+        }
+        if (n != keys.length) throw new ConcurrentModificationException();
+        return new FrozenHashTable<>(keys, values);
+    }
+
+    //Подбор смещений, начиная с самых больших групп. Возвращает ячейку для каждого хеша
+    //или null, если для какой-то группы смещение не нашлось
+    private static int[] place(int[] hashes, int[] displacements, int slots) {
+        int buckets = displacements.length;
+        //Сортировка хешей по группам подсчётом
+        int[] start = new int[buckets + 1];
+        for (int hash : hashes) {
+            start[bucket(hash, buckets) + 1]++;
+        }
+        int maxBucket = 0;
+        for (int b = 0; b < buckets; b++) {
+            maxBucket = Math.max(maxBucket, start[b + 1]);
+            start[b + 1] += start[b];
+        }
+        int[] members = new int[hashes.length];
+        int[] fill = Arrays.copyOf(start, buckets);
+        for (int i = 0; i < hashes.length; i++) {
+            members[fill[bucket(hashes[i], buckets)]++] = i;
+        }
+        //Группы по убыванию размера, тоже подсчётом
+        int[] bySize = new int[maxBucket + 2];
+        for (int b = 0; b < buckets; b++) {
+            bySize[maxBucket - (start[b + 1] - start[b]) + 1]++;
+        }
+        for (int s = 0; s <= maxBucket; s++) {
+            bySize[s + 1] += bySize[s];
+        }
+        int[] bucketOrder = new int[buckets];
+        for (int b = 0; b < buckets; b++) {
+            bucketOrder[bySize[maxBucket - (start[b + 1] - start[b])]++] = b;
+        }
+        boolean[] taken = new boolean[slots];
+        int[] positions = new int[hashes.length];
+        int[] candidate = new int[maxBucket];
+        for (int b : bucketOrder) {
+            int from = start[b];
+            int count = start[b + 1] - from;
+            if (count == 0) break;
+            int d = 0;
+            search:
+            for (; ; d++) {
+                if (d == MAX_DISPLACEMENT) return null;
+                for (int j = 0; j < count; j++) {
+                    int slot = position(hashes[members[from + j]], d, slots);
+                    if (taken[slot]) continue search;
+                    for (int k = 0; k < j; k++) {
+                        if (candidate[k] == slot) continue search;
+                    }
+                    candidate[j] = slot;
+                }
+                break;
+            }
+            displacements[b] = d;
+            for (int j = 0; j < count; j++) {
+                taken[candidate[j]] = true;
+                positions[members[from + j]] = candidate[j];
+            }
+        }
+        return positions;
+    }
+
+    //Финализатор fmix32 из MurmurHash3
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    //Отображение хеша на [0, n) умножением вместо деления
+    private static int reduce(int hash, int n) {
+        return (int) (((hash & 0xFFFFFFFFL) * n) >>> 32);
+    }
+
+    private static int bucket(int hash, int buckets) {
+        return reduce(hash, buckets);
+    }
+
+    private static int position(int hash, int displacement, int slots) {
+        return reduce(mix(hash + GOLDEN * (displacement + 1)), slots);
+    }
+
+    private int slot(int hash) {
+        return position(hash, displacements[bucket(hash, displacements.length)], keys.length);
+    }
+
+    //Ячейка ключа, -(номер в overflow) - 2 для ключей с повторяющимся хешем или -1
+    private int findIndex(Object key) {
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        int hash = mix(key.hashCode());
+        int slot = slot(hash);
+        if (hashes[slot] != hash || keys[slot] == null) return -1;
+        if (keys[slot].equals(key)) return slot;
+        if (overflowHashes.length == 0) return -1;
+        int i = Arrays.binarySearch(overflowHashes, hash);
+        if (i < 0) return -1;
+        while (i > 0 && overflowHashes[i - 1] == hash) i--;
+        for (; i < overflowHashes.length && overflowHashes[i] == hash; i++) {
+            if (overflowKeys[i].equals(key)) return -i - 2;
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findIndex(key) != -1;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null) throw new NullPointerException("Значение не может быть null");
+        for (Object v : values) {
+            if (value.equals(v)) return true;
+        }
+        for (Object v : overflowValues) {
+            if (value.equals(v)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int index = findIndex(key);
+        if (index >= 0) return (V) values[index];
+        return index == -1 ? null : (V) overflowValues[-index - 2];
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    //Все изменяющие методы бросают исключение, даже если таблица не изменилась бы
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Таблица только для чтения");
+    }
+
+    @Override
+    public V put(K key, V value) {
+        throw readOnly();
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw readOnly();
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        throw readOnly();
+    }
+
+    @Override
+    public void clear() {
+        throw readOnly();
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        throw readOnly();
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        throw readOnly();
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        throw readOnly();
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        throw readOnly();
+    }
+
+    //Число ячеек основного массива
+    int capacity() {
+        return keys.length;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry<?, ?> entry) || entry.getKey() == null) return false;
+                    Object value = get(entry.getKey());
+                    return value != null && value.equals(entry.getValue());
+                }
+
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    //Сначала основные ячейки, затем ключи с повторяющимся хешем
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        int next = advance(0);
+
+        private int advance(int from) {
+            while (from < keys.length && keys[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < keys.length + overflowKeys.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Map.Entry<K, V> entry;
+            if (next < keys.length) {
+                entry = new SimpleImmutableEntry<>((K) keys[next], (V) values[next]);
+                next = advance(next + 1);
+            } else {
+                int i = next - keys.length;
+                entry = new SimpleImmutableEntry<>((K) overflowKeys[i], (V) overflowValues[i]);
+                next++;
+            }
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import java.util.*;
+import java.util.function.BiConsumer;
+
+//Мультитаблица ключ -> несколько значений на ячейках HashTable, для индексов с малым числом значений на ключ.
+//Единственное значение ключа хранится прямо в элементе таблицы, без списка; начиная со второго значения
+//они лежат в Chunk - массиве с длиной, который растёт в полтора раза. Вставка делает один проход проб через merge.
+//Chunk не меняется на месте: каждое изменение кладёт в таблицу новый Chunk через её методы записи,
+//так что работают снимки и modCount таблицы. Повторяющиеся значения допускаются, порядок значений ключа - порядок вставки
+public class HashMultiTable<K, V> {
+    private final HashTable<K, Object> table;  //Значение - V или Chunk
+    private int size = 0;  //Число пар ключ-значение
+    private int modCount = 0;
+
+    //Значения ключа, если их больше одного
+    private static final class Chunk {
+        final Object[] values;
+        final int size;
+
+        Chunk(Object[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        //Новый Chunk на том же массиве, если за size есть место: прежний Chunk видит только свои size значений
+        //и сам больше не дописывается, потому что в таблице его уже заменил новый
+        Chunk plus(Object value) {
+            Object[] array = size < values.length ? values : Arrays.copyOf(values, size + (size >>> 1));
+            array[size] = value;
+            return new Chunk(array, size + 1);
+        }
+
+        int indexOf(Object value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i].equals(value)) return i;
+            }
+            return -1;
+        }
+
+        //Значения без index-го в порядке вставки; оставшееся единственное значение хранится без Chunk
+        Object without(int index) {
+            if (size == 2) return values[1 - index];
+            Object[] array = new Object[size - 1];
+            System.arraycopy(values, 0, array, 0, index);
+            System.arraycopy(values, index + 1, array, index, size - index - 1);
+            return new Chunk(array, size - 1);
+        }
+    }
+
+    public HashMultiTable(int capacity, float loadFactor) {
+        table = new HashTable<>(capacity, loadFactor);
+    }
+
+    public HashMultiTable(int capacity) {
+        this(capacity, 0.75f);
+    }
+
+    public HashMultiTable() {
+        this(16, 0.75f);
+    }
+
+    private static Object append(Object current, Object value) {
+        if (current instanceof Chunk chunk) return chunk.plus(value);
+        return new Chunk(new Object[]{current, value}, 2);
+    }
+
+    public void putValue(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+        table.merge(key, value, HashMultiTable::append);
+        size++;
+        modCount++;
+    }
+
+    //Удаляет одно вхождение value, возвращает true, если оно было
+    @SuppressWarnings("unchecked")
+    public boolean removeValue(Object key, Object value) {
+        if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+        Object current = table.get(key);
+        if (current == null) return false;
+        if (current instanceof Chunk chunk) {
+            int index = chunk.indexOf(value);
+            if (index == -1) return false;
+            //Ключ есть в таблице, значит, он типа K
+            table.put((K) key, chunk.without(index));
+        } else {
+            if (!current.equals(value)) return false;
+            table.remove(key);
+        }
+        size--;
+        modCount++;
+        return true;
+    }
+
+    //Удаляет все значения ключа и возвращает их
+    @SuppressWarnings("unchecked")
+    public List<V> removeAll(Object key) {
+        Object removed = table.remove(key);
+        if (removed == null) return List.of();
+        List<V> values = removed instanceof Chunk chunk
+                ? (List<V>) Arrays.asList(Arrays.copyOf(chunk.values, chunk.size)) : List.of((V) removed);
+        size -= values.size();
+        modCount++;
+        return values;
+    }
+
+    //Живое представление значений ключа: отражает последующие изменения, add и remove меняют таблицу
+    public Collection<V> getAll(K key) {
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        return new Values(key);
+    }
+
+    public boolean containsKey(Object key) {
+        return table.containsKey(key);
+    }
+
+    public boolean containsEntry(Object key, Object value) {
+        if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+        Object current = table.get(key);
+        if (current instanceof Chunk chunk) return chunk.indexOf(value) != -1;
+        return current != null && current.equals(value);
+    }
+
+    //Число значений ключа, 0 - ключа нет
+    public int valueCount(Object key) {
+        return count(table.get(key));
+    }
+
+    private static int count(Object current) {
+        if (current == null) return 0;
+        return current instanceof Chunk chunk ? chunk.size : 1;
+    }
+
+    //Число пар ключ-значение
+    public int size() {
+        return size;
+    }
+
+    public int keyCount() {
+        return table.size();
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        table.clear();
+        size = 0;
+        modCount++;
+    }
+
+    //Ключи только для чтения: удаление ключа идёт через removeAll
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(table.keySet());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        table.forEach((key, current) -> {
+            if (current instanceof Chunk chunk) {
+                for (int i = 0; i < chunk.size; i++) {
+                    action.accept(key, (V) chunk.values[i]);
+                }
+            } else {
+                action.accept(key, (V) current);
+            }
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+        });
+    }
+
+    //Гистограмма числа значений: result[i] - число ключей, у которых i + 1 значений
+    public int[] valueCountHistogram() {
+        int[] histogram = new int[0];
+        for (Object current : table.values()) {
+            int count = count(current);
+            if (count > histogram.length) histogram = Arrays.copyOf(histogram, count);
+            histogram[count - 1]++;
+        }
+        return histogram;
+    }
+
+    public double averageValueCount() {
+        return table.isEmpty() ? 0 : (double) size / table.size();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        table.forEach((key, current) -> {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(key).append('=').append(new Values(key));
+        });
+        return sb.append('}').toString();
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        final K key;
+
+        Values(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public int size() {
+            return valueCount(key);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o != null && containsEntry(key, o);
+        }
+
+        @Override
+        public boolean add(V value) {
+            putValue(key, value);
+            return true;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o != null && removeValue(key, o);
+        }
+
+        @Override
+        public void clear() {
+            HashMultiTable.this.removeAll(key);
+        }
+
+        //Значения на момент создания итератора; изменение таблицы не через итератор - ConcurrentModificationException.
+        //Chunk не меняется на месте, поэтому его массив можно обходить и после удалений через итератор
+        @Override
+        public Iterator<V> iterator() {
+            Object current = table.get(key);
+            Object[] values = current instanceof Chunk chunk ? chunk.values : new Object[]{current};
+            int count = count(current);
+            return new Iterator<>() {
+                int next = 0;
+                int removed = 0;  //Удалено через итератор, на столько сдвинуты значения в таблице
+                boolean canRemove = false;
+                Object live = current;  //Значение ключа в таблице
+                int expectedModCount = modCount;
+
+                @Override
+                public boolean hasNext() {
+                    return next < count;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public V next() {
+                    if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                    if (next >= count) throw new NoSuchElementException();
+                    canRemove = true;
+                    return (V) values[next++];
+                }
+
+                @Override
+                public void remove() {
+                    if (!canRemove) throw new IllegalStateException();
+                    if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                    canRemove = false;
+                    //Удаляется именно выданный элемент, а не первое равное ему значение
+                    if (live instanceof Chunk chunk) {
+                        live = chunk.without(next - 1 - removed);
+                        table.put(key, live);
+                    } else {
+                        table.remove(key);
+                        live = null;
+                    }
+                    removed++;
+                    size--;
+                    modCount++;
+                    expectedModCount = modCount;
+                }
+            };
+        }
+    }
+}
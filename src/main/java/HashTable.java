@@ -1,60 +1,1298 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class HashTable<K, V> implements Map<K, V> {
-    private final int CONST = 17;
+    private static final int CONST = 17;
     private final int default_capacity = 16;
     private int size = 0;
     private int capacity;  //Размерность таблицы
     private final float loadFactor;  //Коэффициент заполнения
+    private final ResizeMode resizeMode;
+    private final Addressing addressing;
     private Item<K, V>[] data;
+    //Метка удалённой ячейки, чтобы не разрывать цепочки проб
+    private static final Item<?, ?> DELETED = new Item<>(null, null);
+    //Доля удалённых ячеек, после которой начинается уплотнение
+    private static final float COMPACTION_THRESHOLD = 0.25f;
+    //Сколько ячеек старого массива переносится за одну операцию
+    private static final int MIGRATION_STEP = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+    private static final int MAX_POWER_OF_TWO_CAPACITY = 1 << 30;
+    private int deleted = 0;  //Число удалённых ячеек в data
+    private Item<K, V>[] oldData;  //Массив, из которого идёт перенос при уплотнении или расширении
+    private int migrateIndex;
+    //Перенос измеряется от startMigration до последнего шага, включая операции таблицы между шагами
+    private long migrationStart;  //0 - статистика была выключена в начале переноса
+    private HashTableResizeEvent migrationEvent;
+    //Результат findSlot, когда нет ни ключа, ни свободной ячейки
+    private static final int NO_SLOT = Integer.MIN_VALUE;
+    private int modCount = 0;  //Число структурных изменений
+    private final Probing probing;
+    //BUCKETIZED и CUCKOO: байт на ячейку - EMPTY, TOMBSTONE или младшие 7 бит хеша элемента
+    private byte[] ctrl;
+    private static final byte EMPTY = (byte) 0x80;
+    private static final byte TOMBSTONE = (byte) 0xFE;
+    //Ячейки BUCKETIZED просматриваются группами по 8, управляющие байты группы читаются одним long
+    private static final int GROUP = 8;
+    private static final long LSB = 0x0101010101010101L;
+    private static final long MSB = 0x8080808080808080L;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    //CUCKOO: capacity ячеек образуют корзины по CUCKOO_WAYS, за ними в data идут stashSize ячеек stash.
+    //Stash заполняется с начала без пропусков и не больше половины capacity
+    private static final int CUCKOO_WAYS = 4;
+    private static final int STASH_SIZE = 4;
+    private static final int MAX_KICKS = 128;
+    private int stashSize = STASH_SIZE;
+    private int kickSeed = 1;  //Состояние xorshift для выбора вытесняемого элемента
+    //Счётчики статистики, null - статистика выключена и ничего не считается
+    private HashTableStats.Recorder stats;
+    private volatile HashTableStats lastStats;
+    //Ёмкость после конструктора, ниже неё таблица не сжимается
+    private final int minCapacity;
+    //Доля от loadFactor * capacity, ниже которой remove сжимает таблицу, 0 - не сжимать
+    private float shrinkThreshold = 0;
+    private boolean retainCapacityOnClear = false;
+    //Защита от подбора коллизий: случайное зерно смешивается с hashCode(). 0 - таблица без зерна,
+    //на SipHash она не переходит (временная копия для save)
+    private int seed = ThreadLocalRandom.current().nextInt() | 1;
+    //Столько элементов с тем же хешем, но другим ключом на пути проб считаются атакой
+    private static final int FLOOD_THRESHOLD = 8;
+    private boolean floodDetected = false;
+    //После атаки строковые ключи хешируются SipHash со случайным ключом sipKey0, sipKey1
+    private boolean hardened = false;
+    private long sipKey0;
+    private long sipKey1;
+    //Снимки (snapshot) читают те же массивы data, ctrl и те же элементы, что и таблица.
+    //sharedArrays - массивы общие со снимком, перед первой записью таблица их копирует, а снимок бросает исключение
+    private final boolean readOnly;
+    private boolean sharedArrays = false;
+    //Живые снимки таблицы: пока они есть, значение элемента меняется в копии, а не на месте
+    private List<WeakReference<HashTable<K, V>>> snapshots;
+
+    //FULL - перестройка всей таблицы в момент переполнения,
+    //INCREMENTAL - перенос элементов в новый массив частями при последующих операциях
+    public enum ResizeMode {
+        FULL,
+        INCREMENTAL
+    }
+
+    //MODULO - ёмкость 2n+1 и остаток от деления hashCode() * 17,
+    //POWER_OF_TWO - ёмкость степень двойки, перемешанный hashCode(), маска и нечётный шаг
+    public enum Addressing {
+        MODULO,
+        POWER_OF_TWO
+    }
+
+    //DOUBLE_HASHING - шаг hashFunction2 и метки удалённых ячеек,
+    //ROBIN_HOOD - линейные пробы, элемент дальше от своей ячейки вытесняет более близкий, удаление сдвигом назад,
+    //BUCKETIZED - группы по 8 ячеек с байтом метаданных на ячейку, совпадения в группе ищутся сразу по 8 байтам,
+    //CUCKOO - корзины по 4 ячейки, ключ лежит в одной из двух корзин (hashFunction1 и hashFunction1 ^ hashFunction2)
+    //или в маленьком stash, вставка выталкивает жильцов в их вторую корзину.
+    //Все, кроме DOUBLE_HASHING, работают только с POWER_OF_TWO, полным расширением и коэффициентом меньше 1
+    public enum Probing {
+        DOUBLE_HASHING,
+        ROBIN_HOOD,
+        BUCKETIZED,
+        CUCKOO
+    }
+
+    public HashTable(int capacity, float loadFactor, ResizeMode resizeMode, Addressing addressing, Probing probing) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Неправильный размер " + capacity);
+        }
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Неправильный коэффициент " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        readOnly = false;
+        this.resizeMode = Objects.requireNonNull(resizeMode);
+        this.addressing = Objects.requireNonNull(addressing);
+        this.probing = Objects.requireNonNull(probing);
+        if (probing != Probing.DOUBLE_HASHING) {
+            if (addressing != Addressing.POWER_OF_TWO || resizeMode != ResizeMode.FULL) {
+                throw new IllegalArgumentException(probing + " требует POWER_OF_TWO и FULL");
+            }
+            if (loadFactor >= 1) {
+                throw new IllegalArgumentException("Неправильный коэффициент " + loadFactor);
+            }
+        }
+        int initial = initialCapacity(capacity, addressing);
+        this.capacity = probing == Probing.BUCKETIZED || probing == Probing.CUCKOO ? Math.max(initial, GROUP) : initial;
+        minCapacity = this.capacity;
+        data = newTable(this.capacity);
+        ctrl = newCtrl(data.length);
+    }
+
+    public HashTable(int capacity, float loadFactor, ResizeMode resizeMode, Addressing addressing) {
+        this(capacity, loadFactor, resizeMode, addressing, Probing.DOUBLE_HASHING);
+    }
+
+    public HashTable(int capacity, float loadFactor, Probing probing) {
+        this(capacity, loadFactor, ResizeMode.FULL, probing == Probing.DOUBLE_HASHING ? Addressing.MODULO : Addressing.POWER_OF_TWO, probing);
+    }
+
+    public HashTable(int capacity, float loadFactor, ResizeMode resizeMode) {
+        this(capacity, loadFactor, resizeMode, Addressing.MODULO);
+    }
+
+    public HashTable(int capacity, float loadFactor, Addressing addressing) {
+        this(capacity, loadFactor, ResizeMode.FULL, addressing);
+    }
+
+    public HashTable(int capacity, float loadFactor) {
+        this(capacity, loadFactor, ResizeMode.FULL);
+    }
+
+    public HashTable(int capacity) {
+        this(capacity, 0.75f);
+    }
+
+    public HashTable() {
+        this(16, 0.75f);
+    }
+
+    public HashTable(Map<? extends K, ? extends V> m) {
+        this(capacityFor(16, 0.75f, Objects.requireNonNull(m, "Map не может быть null").size(), Addressing.MODULO), 0.75f);
+        putAll(m);
+    }
+
+    //Снимок на массивах source: ничего не копируется
+    private HashTable(HashTable<K, V> source, boolean readOnly) {
+        this.readOnly = readOnly;
+        loadFactor = source.loadFactor;
+        resizeMode = source.resizeMode;
+        addressing = source.addressing;
+        probing = source.probing;
+        minCapacity = source.minCapacity;
+        size = source.size;
+        capacity = source.capacity;
+        data = source.data;
+        ctrl = source.ctrl;
+        deleted = source.deleted;
+        stashSize = source.stashSize;
+        seed = source.seed;
+        hardened = source.hardened;
+        sipKey0 = source.sipKey0;
+        sipKey1 = source.sipKey1;
+        sharedArrays = true;
+    }
+
+    private void updateTable() {
+        rehash(nextCapacity(capacity, addressing));
+    }
+
+    //Перенос ссылок на элементы в новый массив без промежуточной копии
+    private void rehash(int newCapacity) {
+        finishMigration();
+        HashTableResizeEvent event = HashTableResizeEvent.start(capacity);
+        long start = stats != null ? System.nanoTime() : 0;
+        if (probing == Probing.CUCKOO && stashSize * 2 > newCapacity) stashSize = STASH_SIZE;
+        while (true) {
+            Item<K, V>[] table = newTable(newCapacity);
+            byte[] tableCtrl = newCtrl(table.length);
+            if (moveItems(data, table, tableCtrl)) {
+                data = table;
+                ctrl = tableCtrl;
+                capacity = newCapacity;
+                deleted = 0;
+                if (stats != null) stats.resized(System.nanoTime() - start);
+                if (event != null) event.finish(newCapacity, size);
+                return;
+            }
+            if (!growStash(newCapacity)) newCapacity = nextCapacity(newCapacity, addressing);
+        }
+    }
+
+    private boolean moveItems(Item<K, V>[] from, Item<K, V>[] to, byte[] toCtrl) {
+        for (Item<K, V> item : from) {
+            if (item != null && item != DELETED) {
+                if (place(to, toCtrl, item) == -1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Item<K, V>[] newTable(int capacity) {
+        return new Item[probing == Probing.CUCKOO ? capacity + stashSize : capacity];
+    }
+
+    private byte[] newCtrl(int capacity) {
+        if (probing != Probing.BUCKETIZED && probing != Probing.CUCKOO) return null;
+        byte[] result = new byte[capacity];
+        Arrays.fill(result, EMPTY);
+        return result;
+    }
+
+    //Размещение элемента, которого точно нет в table, возвращает индекс или -1, если места нет
+    private int place(Item<K, V>[] table, byte[] tableCtrl, Item<K, V> item) {
+        int index;
+        switch (probing) {
+            case ROBIN_HOOD -> {
+                index = robinHoodPosition(table, item.hash);
+                if (index == -1 || !robinHoodInsert(table, index, item)) return -1;
+            }
+            case BUCKETIZED -> {
+                index = bucketFreeIndex(tableCtrl, item.hash);
+                if (index == -1) return -1;
+                if (table == data && tableCtrl[index] == TOMBSTONE) deleted--;
+                tableCtrl[index] = (byte) (item.hash & 0x7F);
+                table[index] = item;
+            }
+            case CUCKOO -> {
+                index = cuckooPlace(table, tableCtrl, item);
+                if (index == -1) return -1;
+            }
+            default -> {
+                index = freeIndex(table, item.hash);
+                if (index == -1) return -1;
+                if (table == data && table[index] == DELETED) deleted--;
+                table[index] = item;
+            }
+        }
+        return index;
+    }
+
+    static int nextCapacity(int capacity, Addressing addressing) {
+        if (addressing == Addressing.POWER_OF_TWO) {
+            if (capacity >= MAX_POWER_OF_TWO_CAPACITY) throw new IllegalStateException("Превышен максимальный размер таблицы");
+            return capacity * 2;
+        }
+        if (capacity >= MAX_CAPACITY / 2) {
+            if (capacity == MAX_CAPACITY) throw new IllegalStateException("Превышен максимальный размер таблицы");
+            return MAX_CAPACITY;
+        }
+        return nextPrime(capacity * 2 + 1);
+    }
+
+    //Шаг hashFunction2 обходит все ячейки, только если он взаимно прост с ёмкостью. При случайных хешах
+    //(зерно) составная ёмкость давала короткие циклы проб и лишние расширения, поэтому ёмкость MODULO простая
+    private static int nextPrime(int n) {
+        for (n |= 1; n > 0 && n < MAX_CAPACITY; n += 2) {
+            if (isPrime(n)) return n;
+        }
+        return MAX_CAPACITY;
+    }
+
+    private static int previousPrime(int n) {
+        for (n = (n - 1) | 1; n >= 3; n -= 2) {
+            if (isPrime(n)) return n;
+        }
+        return -1;
+    }
+
+    private static boolean isPrime(int n) {
+        if (n % 2 == 0) return n == 2;
+        for (int d = 3; d <= n / d; d += 2) {
+            if (n % d == 0) return false;
+        }
+        return n > 1;
+    }
+
+    //Ёмкость из той же последовательности, что и при расширении: степень двойки для POWER_OF_TWO,
+    //для MODULO - простое число не меньше capacity
+    static int initialCapacity(int capacity, Addressing addressing) {
+        if (addressing == Addressing.POWER_OF_TWO) return powerOfTwoCapacity(capacity);
+        return capacity <= 2 ? capacity : nextPrime(capacity);
+    }
+
+    private static int powerOfTwoCapacity(int capacity) {
+        if (capacity > MAX_POWER_OF_TWO_CAPACITY) return MAX_POWER_OF_TWO_CAPACITY;
+        return capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    //Ёмкость, при которой expectedSize элементов поместятся без расширения
+    private static int capacityFor(int capacity, float loadFactor, int expectedSize, Addressing addressing) {
+        while (loadFactor * capacity <= expectedSize) {
+            capacity = nextCapacity(capacity, addressing);
+        }
+        return capacity;
+    }
+
+    public void ensureCapacity(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Неправильный размер " + expectedSize);
+        }
+        beforeWrite();
+        int newCapacity = capacityFor(capacity, loadFactor, expectedSize, addressing);
+        if (newCapacity != capacity) {
+            rehash(newCapacity);
+            modCount++;
+        }
+    }
+
+    //Сжатие после удалений: таблица уменьшается, когда заполнено меньше threshold * loadFactor ячеек
+    //и в меньшей ёмкости элементы займут не больше половины loadFactor. Между сжатием и расширением
+    //число элементов должно измениться вдвое, поэтому таблица не перестраивается туда и обратно
+    public void setShrinkThreshold(float threshold) {
+        if (!(threshold >= 0 && threshold < 0.5f)) {
+            throw new IllegalArgumentException("Неправильный коэффициент " + threshold);
+        }
+        shrinkThreshold = threshold;
+    }
+
+    //clear() оставляет текущую ёмкость вместо начальной, чтобы не расширять таблицу заново
+    public void setRetainCapacityOnClear(boolean retain) {
+        retainCapacityOnClear = retain;
+    }
+
+    //Перестройка в наименьшую ёмкость, в которой элементы помещаются без расширения
+    public void trimToSize() {
+        beforeWrite();
+        finishMigration();
+        int newCapacity = capacityFor(minCapacity, loadFactor, size, addressing);
+        if (newCapacity < capacity || deleted > 0) {
+            rehash(Math.min(newCapacity, capacity));
+            modCount++;
+        }
+    }
+
+    //Примерно вдвое меньшая ёмкость из той же последовательности или -1, если меньше minCapacity
+    private int previousCapacity(int capacity) {
+        int previous = addressing == Addressing.POWER_OF_TWO ? capacity >>> 1 : previousPrime((capacity + 1) >>> 1);
+        return previous < minCapacity ? -1 : previous;
+    }
+
+    private boolean checkShrink() {
+        if (shrinkThreshold == 0 || oldData != null || size >= loadFactor * capacity * shrinkThreshold) {
+            return false;
+        }
+        int newCapacity = capacity;
+        for (int previous = previousCapacity(capacity); previous != -1 && size < loadFactor * previous / 2;
+             previous = previousCapacity(previous)) {
+            newCapacity = previous;
+        }
+        if (newCapacity == capacity) {
+            return false;
+        }
+        if (resizeMode == ResizeMode.INCREMENTAL) {
+            startMigration(newCapacity);
+        } else {
+            rehash(newCapacity);
+        }
+        return true;
+    }
+
+    //Хеш ключа, вычисляется один раз на операцию и хранится в Item
+    private int spread(Object key) {
+        return spread(key, seed, hardened, sipKey0, sipKey1, addressing);
+    }
+
+    //MappedHashTable считает хеш так же, по зерну и ключам SipHash из заголовка файла
+    static int spread(Object key, int seed, boolean hardened, long sipKey0, long sipKey1, Addressing addressing) {
+        if (hardened && key instanceof String string) {
+            return spread((int) SipHash.hash(sipKey0, sipKey1, string), addressing);
+        }
+        return spread(key.hashCode() ^ seed, addressing);
+    }
+
+    //Одинаковый hashCode() зерно не разводит. Если ключи строковые, все хеши пересчитываются через SipHash
+    //и таблица перестраивается; для других ключей остаётся только зерно
+    private void checkFlood(Object key) {
+        floodDetected = false;
+        if (hardened || seed == 0 || !(key instanceof String)) return;
+        finishMigration();
+        hardened = true;
+        sipKey0 = ThreadLocalRandom.current().nextLong();
+        sipKey1 = ThreadLocalRandom.current().nextLong();
+        boolean shared = hasSnapshots();
+        for (int i = 0; i < data.length; i++) {
+            Item<K, V> item = data[i];
+            if (item != null && item != DELETED) {
+                if (shared) data[i] = item = new Item<>(item.getKey(), item.getValue(), item.hash);
+                item.hash = spread(item.getKey());
+            }
+        }
+        rehash(capacity);
+        modCount++;
+    }
+
+    boolean hardened() {
+        return hardened;
+    }
+
+    static int spread(int h, Addressing addressing) {
+        if (addressing == Addressing.POWER_OF_TWO) {
+            //Финализатор fmix32 из MurmurHash3
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+        }
+        return h;
+    }
+
+    private int hashFunction1(int hash, int capacity) {
+        return hashFunction1(hash, capacity, addressing);
+    }
+
+    static int hashFunction1(int hash, int capacity, Addressing addressing) {
+        if (addressing == Addressing.POWER_OF_TWO) {
+            return hash & (capacity - 1);
+        }
+        return Math.abs((hash * CONST) % capacity);
+    }
+
+    private int hashFunction2(int hash, int capacity) {
+        return hashFunction2(hash, capacity, addressing);
+    }
+
+    //Шаг не бывает нулевым, в режиме POWER_OF_TWO он нечётный и обходит все ячейки
+    static int hashFunction2(int hash, int capacity, Addressing addressing) {
+        if (addressing == Addressing.POWER_OF_TWO) {
+            return (Integer.rotateLeft(hash, 16) | 1) & (capacity - 1);
+        }
+        int step = Math.abs(((hash * CONST) + 1) % capacity);
+        return step == 0 ? 1 : step;
+    }
+
+    //Поиск ячейки с ключом по той же последовательности проб, что и в put
+    private int findIndex(Item<K, V>[] table, Object key, int hash) {
+        if (probing == Probing.ROBIN_HOOD) return robinHoodIndex(table, key, hash);
+        if (probing == Probing.BUCKETIZED) return bucketIndex(key, hash);
+        if (probing == Probing.CUCKOO) return cuckooIndex(table, key, hash);
+        int capacity = table.length;
+        int index = hashFunction1(hash, capacity);
+        int step = hashFunction2(hash, capacity);
+        for (int i = 0; i < capacity; i++) {
+            Item<K, V> item = table[index];
+            if (item == null) {
+                return -1;
+            }
+            if (item.hash == hash && item != DELETED && item.getKey().equals(key)) {
+                return index;
+            }
+            index += step;
+            if (index >= capacity) index -= capacity;
+        }
+        return -1;
+    }
+
+    //Первая пустая или удалённая ячейка на пути проб ключа
+    private int freeIndex(Item<K, V>[] table, int hash) {
+        int capacity = table.length;
+        int index = hashFunction1(hash, capacity);
+        int step = hashFunction2(hash, capacity);
+        for (int i = 0; i < capacity; i++) {
+            Item<K, V> item = table[index];
+            if (item == null || item == DELETED) {
+                return index;
+            }
+            index += step;
+            if (index >= capacity) index -= capacity;
+        }
+        return -1;
+    }
+
+    //Один проход по пробам: индекс ключа (>= 0) или -(первая свободная ячейка) - 1,
+    //NO_SLOT, если ключа нет и свободных ячеек на пути не осталось
+    private int findSlot(Item<K, V>[] table, Object key, int hash) {
+        if (probing == Probing.ROBIN_HOOD) return robinHoodSlot(table, key, hash);
+        if (probing == Probing.BUCKETIZED) return bucketSlot(key, hash);
+        if (probing == Probing.CUCKOO) return cuckooSlot(table, key, hash);
+        int capacity = table.length;
+        int index = hashFunction1(hash, capacity);
+        int step = hashFunction2(hash, capacity);
+        int free = -1;
+        int collisions = 0;
+        for (int i = 0; i < capacity; i++) {
+            Item<K, V> item = table[index];
+            if (item == null) {
+                return -(free == -1 ? index : free) - 1;
+            }
+            if (item == DELETED) {
+                if (free == -1) free = index;
+            } else if (item.hash == hash) {
+                if (item.getKey().equals(key)) return index;
+                if (++collisions == FLOOD_THRESHOLD) floodDetected = true;
+            }
+            index += step;
+            if (index >= capacity) index -= capacity;
+        }
+        return free == -1 ? NO_SLOT : -free - 1;
+    }
+
+    //ROBIN_HOOD: расстояние элемента в ячейке index от его начальной ячейки
+    private static int distance(Item<?, ?>[] table, int index) {
+        int mask = table.length - 1;
+        return (index - (table[index].hash & mask)) & mask;
+    }
+
+    //Поиск останавливается на пустой ячейке или на элементе, который ближе к своей ячейке, чем искомый
+    private int robinHoodIndex(Item<K, V>[] table, Object key, int hash) {
+        int mask = table.length - 1;
+        int index = hash & mask;
+        for (int d = 0; d < table.length; d++) {
+            Item<K, V> item = table[index];
+            if (item == null || distance(table, index) < d) {
+                return -1;
+            }
+            if (item.hash == hash && item.getKey().equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int robinHoodSlot(Item<K, V>[] table, Object key, int hash) {
+        int mask = table.length - 1;
+        int index = hash & mask;
+        int collisions = 0;
+        for (int d = 0; d < table.length; d++) {
+            Item<K, V> item = table[index];
+            if (item == null || distance(table, index) < d) {
+                return -index - 1;
+            }
+            if (item.hash == hash) {
+                if (item.getKey().equals(key)) return index;
+                if (++collisions == FLOOD_THRESHOLD) floodDetected = true;
+            }
+            index = (index + 1) & mask;
+        }
+        return NO_SLOT;
+    }
+
+    private static int robinHoodPosition(Item<?, ?>[] table, int hash) {
+        int mask = table.length - 1;
+        int index = hash & mask;
+        for (int d = 0; d < table.length; d++) {
+            if (table[index] == null || distance(table, index) < d) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    //Элементы кластера упорядочены по начальной ячейке, поэтому вставка - сдвиг хвоста кластера на одну ячейку
+    private static <K, V> boolean robinHoodInsert(Item<K, V>[] table, int index, Item<K, V> item) {
+        int mask = table.length - 1;
+        int end = index;
+        while (table[end] != null) {
+            end = (end + 1) & mask;
+            if (end == index) return false;
+        }
+        while (end != index) {
+            int previous = (end - 1) & mask;
+            table[end] = table[previous];
+            end = previous;
+        }
+        table[index] = item;
+        return true;
+    }
+
+    //Удаление без меток: следующие элементы, стоящие не на своей ячейке, сдвигаются назад
+    //Возвращает элемент, который сдвиг перенёс из первой ячейки в последнюю, или null
+    private Item<K, V> robinHoodDelete(int index) {
+        int mask = data.length - 1;
+        int next = (index + 1) & mask;
+        Item<K, V> wrapped = null;
+        while (next != index && data[next] != null && distance(data, next) > 0) {
+            if (next == 0) wrapped = data[next];
+            data[index] = data[next];
+            index = next;
+            next = (next + 1) & mask;
+        }
+        data[index] = null;
+        return wrapped;
+    }
+
+    //BUCKETIZED: байты группы, равные h2, пустые и пустые или удалённые - старшие биты соответствующих байт
+    private static long matchByte(long word, int h2) {
+        long x = word ^ (LSB * h2);
+        return (x - LSB) & ~x & MSB;
+    }
+
+    private static long matchEmpty(long word) {
+        return word & (~word << 6) & MSB;
+    }
+
+    private static long matchEmptyOrDeleted(long word) {
+        return word & (~word << 7) & MSB;
+    }
+
+    private static long group(byte[] ctrl, int base) {
+        return (long) LONGS.get(ctrl, base);
+    }
+
+    //Ёмкость - степень двойки, а stash меньше неё, поэтому число корзин определяется длиной массива
+    private static int cuckooBuckets(Item<?, ?>[] table) {
+        return Integer.highestOneBit(table.length) / CUCKOO_WAYS;
+    }
+
+    //CUCKOO: если таблица заполнена меньше чем наполовину, место кончилось из-за ключей с одинаковым хешем,
+    //и расширение не поможет, поэтому вместо него удваивается stash
+    private boolean growStash(int capacity) {
+        if (probing != Probing.CUCKOO || stashSize * 4 > capacity || size >= loadFactor * capacity / 2) {
+            return false;
+        }
+        stashSize *= 2;
+        return true;
+    }
+
+    private int cuckooBucket(int hash, int buckets) {
+        return hashFunction1(hash, buckets);
+    }
+
+    //Вторая корзина для первой и наоборот: шаг зависит только от хеша и нечётен, поэтому корзины различны
+    private int cuckooAlternate(int bucket, int hash, int buckets) {
+        return bucket ^ hashFunction2(hash, buckets);
+    }
+
+    //Элемент разыменовывается, только если совпал байт хеша в ctrl
+    private int cuckooFind(Item<K, V>[] table, int from, int to, Object key, int hash) {
+        byte tag = (byte) (hash & 0x7F);
+        int collisions = 0;
+        for (int i = from; i < to; i++) {
+            if (ctrl[i] == tag) {
+                Item<K, V> item = table[i];
+                if (item.hash == hash) {
+                    if (item.getKey().equals(key)) return i;
+                    if (++collisions == FLOOD_THRESHOLD) floodDetected = true;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int cuckooFree(Item<?, ?>[] table, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (table[i] == null) return i;
+        }
+        return -1;
+    }
+
+    //Не больше двух корзин и stash, если он не пуст
+    private int cuckooIndex(Item<K, V>[] table, Object key, int hash) {
+        int buckets = cuckooBuckets(table);
+        int b1 = cuckooBucket(hash, buckets);
+        int index = cuckooFind(table, b1 * CUCKOO_WAYS, (b1 + 1) * CUCKOO_WAYS, key, hash);
+        if (index != -1) return index;
+        int b2 = cuckooAlternate(b1, hash, buckets);
+        index = cuckooFind(table, b2 * CUCKOO_WAYS, (b2 + 1) * CUCKOO_WAYS, key, hash);
+        if (index != -1) return index;
+        int stash = buckets * CUCKOO_WAYS;
+        if (ctrl[stash] == EMPTY) return -1;
+        return cuckooFind(table, stash, table.length, key, hash);
+    }
+
+    //Индекс ключа или -(свободная ячейка в одной из корзин) - 1, NO_SLOT - обе корзины заняты
+    private int cuckooSlot(Item<K, V>[] table, Object key, int hash) {
+        int index = cuckooIndex(table, key, hash);
+        if (index != -1) return index;
+        int buckets = cuckooBuckets(table);
+        int b1 = cuckooBucket(hash, buckets);
+        int free = cuckooFree(table, b1 * CUCKOO_WAYS, (b1 + 1) * CUCKOO_WAYS);
+        if (free == -1) {
+            int b2 = cuckooAlternate(b1, hash, buckets);
+            free = cuckooFree(table, b2 * CUCKOO_WAYS, (b2 + 1) * CUCKOO_WAYS);
+        }
+        return free == -1 ? NO_SLOT : -free - 1;
+    }
+
+    //Вставка элемента, которого нет в table. Если обе корзины заняты, элемент занимает случайную ячейку,
+    //а её жилец уходит в свою вторую корзину, и так не больше MAX_KICKS раз. Последний вытесненный элемент
+    //попадает в stash; если и он полон, цепочка откатывается и возвращается -1
+    private int cuckooPlace(Item<K, V>[] table, byte[] tableCtrl, Item<K, V> item) {
+        int buckets = cuckooBuckets(table);
+        int bucket = cuckooBucket(item.hash, buckets);
+        int index = cuckooFree(table, bucket * CUCKOO_WAYS, (bucket + 1) * CUCKOO_WAYS);
+        if (index == -1) {
+            bucket = cuckooAlternate(bucket, item.hash, buckets);
+            index = cuckooFree(table, bucket * CUCKOO_WAYS, (bucket + 1) * CUCKOO_WAYS);
+        }
+        if (index != -1) {
+            cuckooSet(table, tableCtrl, index, item);
+            return index;
+        }
+        int[] path = new int[MAX_KICKS];
+        Item<K, V> homeless = item;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int seed = kickSeed;
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            kickSeed = seed;
+            int slot = bucket * CUCKOO_WAYS + (seed & (CUCKOO_WAYS - 1));
+            path[kick] = slot;
+            Item<K, V> victim = table[slot];
+            cuckooSet(table, tableCtrl, slot, homeless);
+            homeless = victim;
+            bucket = cuckooAlternate(bucket, homeless.hash, buckets);
+            index = cuckooFree(table, bucket * CUCKOO_WAYS, (bucket + 1) * CUCKOO_WAYS);
+            if (index == -1 && kick == MAX_KICKS - 1) {
+                index = cuckooFree(table, buckets * CUCKOO_WAYS, table.length);
+            }
+            if (index != -1) {
+                cuckooSet(table, tableCtrl, index, homeless);
+                return path[0];
+            }
+        }
+        for (int kick = MAX_KICKS - 1; kick >= 0; kick--) {
+            Item<K, V> resident = table[path[kick]];
+            cuckooSet(table, tableCtrl, path[kick], homeless);
+            homeless = resident;
+        }
+        return -1;
+    }
+
+    //Удаление из stash переносит последний элемент stash на место удалённого
+    private void cuckooDelete(int index) {
+        cuckooSet(data, ctrl, index, null);
+        if (index >= cuckooBuckets(data) * CUCKOO_WAYS) {
+            int last = data.length - 1;
+            while (last > index && data[last] == null) last--;
+            cuckooSet(data, ctrl, index, data[last]);
+            cuckooSet(data, ctrl, last, null);
+        }
+    }
+
+    private static <K, V> void cuckooSet(Item<K, V>[] table, byte[] tableCtrl, int index, Item<K, V> item) {
+        table[index] = item;
+        tableCtrl[index] = item == null ? EMPTY : (byte) (item.hash & 0x7F);
+    }
+
+    //Группы обходятся с шагом 1, 2, 3..., при числе групп степени двойки это обходит все группы
+    private int bucketIndex(Object key, int hash) {
+        int mask = (ctrl.length >>> 3) - 1;
+        int g = (hash >>> 7) & mask;
+        for (int i = 1; i <= mask + 1; i++) {
+            int base = g << 3;
+            long word = group(ctrl, base);
+            for (long m = matchByte(word, hash & 0x7F); m != 0; m &= m - 1) {
+                Item<K, V> item = data[base + (Long.numberOfTrailingZeros(m) >>> 3)];
+                if (item != null && item.hash == hash && item.getKey().equals(key)) {
+                    return base + (Long.numberOfTrailingZeros(m) >>> 3);
+                }
+            }
+            if (matchEmpty(word) != 0) {
+                return -1;
+            }
+            g = (g + i) & mask;
+        }
+        return -1;
+    }
+
+    private int bucketSlot(Object key, int hash) {
+        int mask = (ctrl.length >>> 3) - 1;
+        int g = (hash >>> 7) & mask;
+        int free = -1;
+        int collisions = 0;
+        for (int i = 1; i <= mask + 1; i++) {
+            int base = g << 3;
+            long word = group(ctrl, base);
+            for (long m = matchByte(word, hash & 0x7F); m != 0; m &= m - 1) {
+                Item<K, V> item = data[base + (Long.numberOfTrailingZeros(m) >>> 3)];
+                if (item != null && item.hash == hash) {
+                    if (item.getKey().equals(key)) return base + (Long.numberOfTrailingZeros(m) >>> 3);
+                    if (++collisions == FLOOD_THRESHOLD) floodDetected = true;
+                }
+            }
+            if (free == -1) {
+                long available = matchEmptyOrDeleted(word);
+                if (available != 0) free = base + (Long.numberOfTrailingZeros(available) >>> 3);
+            }
+            if (matchEmpty(word) != 0) {
+                return -free - 1;
+            }
+            g = (g + i) & mask;
+        }
+        return free == -1 ? NO_SLOT : -free - 1;
+    }
+
+    private static int bucketFreeIndex(byte[] ctrl, int hash) {
+        int mask = (ctrl.length >>> 3) - 1;
+        int g = (hash >>> 7) & mask;
+        for (int i = 1; i <= mask + 1; i++) {
+            long available = matchEmptyOrDeleted(group(ctrl, g << 3));
+            if (available != 0) {
+                return (g << 3) + (Long.numberOfTrailingZeros(available) >>> 3);
+            }
+            g = (g + i) & mask;
+        }
+        return -1;
+    }
+
+    //Число проб (для BUCKETIZED - групп), за которое находится элемент в ячейке index
+    private int probeLength(int index) {
+        int hash = data[index].hash;
+        int capacity = data.length;
+        switch (probing) {
+            case CUCKOO -> {
+                int buckets = cuckooBuckets(data);
+                if (index >= buckets * CUCKOO_WAYS) return 3;
+                return index / CUCKOO_WAYS == cuckooBucket(hash, buckets) ? 1 : 2;
+            }
+            case ROBIN_HOOD -> {
+                return distance(data, index) + 1;
+            }
+            case BUCKETIZED -> {
+                int mask = (capacity >>> 3) - 1;
+                int g = (hash >>> 7) & mask;
+                for (int i = 1; i <= mask + 1; i++) {
+                    if (g == index >>> 3) return i;
+                    g = (g + i) & mask;
+                }
+                return mask + 1;
+            }
+            default -> {
+                int current = hashFunction1(hash, capacity);
+                int step = hashFunction2(hash, capacity);
+                for (int i = 1; i <= capacity; i++) {
+                    if (current == index) return i;
+                    current += step;
+                    if (current >= capacity) current -= capacity;
+                }
+                return capacity;
+            }
+        }
+    }
+
+    //Число проб поиска ключа в data до находки или до остановки, только для статистики
+    private int countProbes(Object key, int hash) {
+        Item<K, V>[] table = data;
+        int capacity = table.length;
+        switch (probing) {
+            //Число просмотренных корзин, stash считается третьей
+            case CUCKOO -> {
+                int index = cuckooIndex(table, key, hash);
+                if (index != -1) return probeLength(index);
+                return ctrl[cuckooBuckets(table) * CUCKOO_WAYS] == EMPTY ? 2 : 3;
+            }
+            case ROBIN_HOOD -> {
+                int mask = capacity - 1;
+                int index = hash & mask;
+                for (int d = 0; d < capacity; d++) {
+                    Item<K, V> item = table[index];
+                    if (item == null || distance(table, index) < d || (item.hash == hash && item.getKey().equals(key))) {
+                        return d + 1;
+                    }
+                    index = (index + 1) & mask;
+                }
+                return capacity;
+            }
+            case BUCKETIZED -> {
+                int mask = (ctrl.length >>> 3) - 1;
+                int g = (hash >>> 7) & mask;
+                for (int i = 1; i <= mask + 1; i++) {
+                    int base = g << 3;
+                    long word = group(ctrl, base);
+                    for (long m = matchByte(word, hash & 0x7F); m != 0; m &= m - 1) {
+                        Item<K, V> item = table[base + (Long.numberOfTrailingZeros(m) >>> 3)];
+                        if (item != null && item.hash == hash && item.getKey().equals(key)) return i;
+                    }
+                    if (matchEmpty(word) != 0) return i;
+                    g = (g + i) & mask;
+                }
+                return mask + 1;
+            }
+            default -> {
+                int index = hashFunction1(hash, capacity);
+                int step = hashFunction2(hash, capacity);
+                for (int i = 0; i < capacity; i++) {
+                    Item<K, V> item = table[index];
+                    if (item == null || (item != DELETED && item.hash == hash && item.getKey().equals(key))) {
+                        return i + 1;
+                    }
+                    index += step;
+                    if (index >= capacity) index -= capacity;
+                }
+                return capacity;
+            }
+        }
+    }
+
+    //Гистограмма длин проб: result[i] - число элементов, которые находятся за i + 1 проб
+    public int[] probeLengthHistogram() {
+        finishMigration();
+        int[] histogram = new int[0];
+        for (int i = 0; i < data.length; i++) {
+            Item<K, V> item = data[i];
+            if (item != null && item != DELETED) {
+                int length = probeLength(i);
+                if (length > histogram.length) histogram = Arrays.copyOf(histogram, length);
+                histogram[length - 1]++;
+            }
+        }
+        return histogram;
+    }
+
+    public double averageProbeLength() {
+        int[] histogram = probeLengthHistogram();
+        long total = 0;
+        long count = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            total += (long) (i + 1) * histogram[i];
+            count += histogram[i];
+        }
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    //Элемент в массиве, из которого идёт перенос
+    private Item<K, V> findOldItem(Object key, int hash) {
+        if (oldData == null) return null;
+        int index = findIndex(oldData, key, hash);
+        return index == -1 ? null : oldData[index];
+    }
+
+    //Вставка нового элемента в ячейку, найденную findSlot
+    private void insertAt(int slot, K key, V value, int hash) {
+        Item<K, V> item = newItem(key, value, hash);
+        if (slot == NO_SLOT) {
+            addItem(item);
+        } else {
+            int index = -slot - 1;
+            if (probing == Probing.ROBIN_HOOD) {
+                robinHoodInsert(data, index, item);
+            } else if (probing == Probing.BUCKETIZED || probing == Probing.CUCKOO) {
+                if (ctrl[index] == TOMBSTONE) deleted--;
+                ctrl[index] = (byte) (item.hash & 0x7F);
+                data[index] = item;
+            } else {
+                if (data[index] == DELETED) deleted--;
+                data[index] = item;
+            }
+        }
+        size++;
+        modCount++;
+        if (floodDetected) checkFlood(key);
+        if ((loadFactor * capacity) <= size) {
+            grow();
+        } else if ((loadFactor * capacity) <= size + deleted && oldData == null) {
+            startCompaction();
+        }
+        inserted(item);
+    }
+
+    //Удаление по результату findSlot; если ключа нет в data, он ищется в старом массиве
+    private V removeAt(int slot, Object key, int hash) {
+        if (slot >= 0) {
+            Item<K, V> item = data[slot];
+            removeSlot(slot);
+            if (!checkShrink()) checkTombstones();
+            return item.getValue();
+        }
+        if (oldData != null) {
+            int index = findIndex(oldData, key, hash);
+            if (index != -1) {
+                Item<K, V> item = oldData[index];
+                oldData[index] = (Item<K, V>) DELETED;
+                size--;
+                modCount++;
+                removed(item);
+                return item.getValue();
+            }
+        }
+        return null;
+    }
+
+    //Удаление элемента из ячейки data без уплотнения, чтобы итератор мог продолжить обход того же массива.
+    //Для ROBIN_HOOD возвращает элемент, перенесённый сдвигом из начала массива в конец
+    private Item<K, V> removeSlot(int slot) {
+        Item<K, V> item = data[slot];
+        Item<K, V> wrapped = null;
+        if (probing == Probing.ROBIN_HOOD) {
+            wrapped = robinHoodDelete(slot);
+        } else if (probing == Probing.BUCKETIZED) {
+            data[slot] = null;
+            ctrl[slot] = TOMBSTONE;
+            deleted++;
+        } else if (probing == Probing.CUCKOO) {
+            cuckooDelete(slot);
+        } else {
+            data[slot] = (Item<K, V>) DELETED;
+            deleted++;
+        }
+        size--;
+        modCount++;
+        removed(item);
+        return wrapped;
+    }
+
+    //Функция в compute и merge не должна менять структуру таблицы
+    private void checkModCount(int expectedModCount) {
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    //Чтение из функции в compute и merge продолжает перенос из oldData и не меняет modCount,
+    //поэтому найденная до вызова ячейка могла устареть: её занял перенесённый элемент или ключ переехал в data
+    private boolean migrated(Item<K, V>[] table, int expectedMigrateIndex) {
+        return data != table || migrateIndex != expectedMigrateIndex;
+    }
 
-    public HashTable(int capacity, float loadFactor) {
-        if (capacity <= 0) {
-            throw new IllegalArgumentException("Неправильный размер " + capacity);
+    private Item<K, V> findItem(Object key) {
+        return findItem(key, spread(key));
+    }
+
+    private Item<K, V> findItem(Object key, int hash) {
+        int index = findIndex(data, key, hash);
+        if (index != -1) return data[index];
+        if (oldData != null) {
+            index = findIndex(oldData, key, hash);
+            if (index != -1) return oldData[index];
         }
-        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
-            throw new IllegalArgumentException("Неправильный коэффициент " + loadFactor);
+        return null;
+    }
+
+    //Вставка элемента, которого точно нет в таблице
+    private void addItem(Item<K, V> item) {
+        while (place(data, ctrl, item) == -1) {
+            if (growStash(capacity)) {
+                rehash(capacity);
+            } else {
+                updateTable();
+            }
         }
-        this.capacity = capacity;
-        this.loadFactor = loadFactor;
-        data = new Item[capacity];
     }
 
-    public HashTable(int capacity) {
-        this(capacity, 0.75f);
+    //Живые элементы переносятся в новый массив по частям при последующих операциях
+    private void startMigration(int newCapacity) {
+        migrationStart = stats != null ? System.nanoTime() : 0;
+        migrationEvent = HashTableResizeEvent.start(capacity);
+        oldData = data;
+        data = new Item[newCapacity];
+        capacity = newCapacity;
+        deleted = 0;
+        migrateIndex = 0;
     }
 
-    public HashTable() {
-        this(16, 0.75f);
+    //Уплотнение - перенос в массив той же ёмкости, чтобы избавиться от удалённых ячеек
+    private void startCompaction() {
+        if (probing == Probing.DOUBLE_HASHING) {
+            startMigration(capacity);
+        } else {
+            rehash(capacity);
+        }
     }
 
-    private void updateTable() {
-        Map<K, V> map = moveItems();
-        capacity = capacity * 2 + 1;
-        data = new Item[capacity];
-        putAll(map);
-        size = map.size();
+    private void grow() {
+        if (resizeMode == ResizeMode.INCREMENTAL) {
+            finishMigration();
+            startMigration(nextCapacity(capacity, addressing));
+        } else {
+            updateTable();
+        }
     }
 
-    private Map<K, V> moveItems() {
-        Map<K, V> map = new HashMap<>();
-        for (Item<K, V> item : data) {
-            if (item != null) {
-                map.put(item.getKey(), item.getValue());
+    private void migrateStep() {
+        Item<K, V>[] source = oldData;
+        if (source == null) return;
+        int end = Math.min(migrateIndex + MIGRATION_STEP, source.length);
+        for (; migrateIndex < end; migrateIndex++) {
+            Item<K, V> item = source[migrateIndex];
+            if (item != null && item != DELETED) {
+                source[migrateIndex] = (Item<K, V>) DELETED;
+                addItem(item);
             }
         }
-        return map;
+        if (migrateIndex >= source.length && oldData == source) {
+            oldData = null;
+            if (stats != null && migrationStart != 0) stats.resized(System.nanoTime() - migrationStart);
+            if (migrationEvent != null) migrationEvent.finish(capacity, size);
+            migrationEvent = null;
+        }
+    }
+
+    private void finishMigration() {
+        while (oldData != null) {
+            migrateStep();
+        }
+    }
+
+    private void checkTombstones() {
+        if (oldData == null && deleted > capacity * COMPACTION_THRESHOLD) {
+            startCompaction();
+        }
+    }
+
+    //Точки расширения для CachingHashTable: создание элемента, вставка и удаление
+    Item<K, V> newItem(K key, V value, int hash) {
+        return new Item<>(key, value, hash);
+    }
+
+    void inserted(Item<K, V> item) {
+    }
+
+    void removed(Item<K, V> item) {
+    }
+
+    //Элемент по ключу без лишних действий, для наследников
+    Item<K, V> getItem(Object key) {
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        migrateStep();
+        return findItem(key);
+    }
+
+    //Массив ячеек после завершения переноса, в нём есть null и удалённые ячейки
+    Item<K, V>[] slots() {
+        finishMigration();
+        return data;
+    }
+
+    //Статистика выключена по умолчанию; пока она выключена, операции не тратят на неё ничего, кроме проверки на null
+    public void enableStats() {
+        if (stats == null) stats = new HashTableStats.Recorder();
+    }
+
+    public void disableStats() {
+        stats = null;
+    }
+
+    //Снимок счётчиков и раскладки ячеек; раскладка считается проходом по всей таблице
+    public HashTableStats stats() {
+        if (stats == null) throw new IllegalStateException("Статистика не включена");
+        int[] histogram = probeLengthHistogram();
+        int[] hashes = new int[size];
+        int count = 0;
+        for (Item<K, V> item : data) {
+            if (item != null && item != DELETED) hashes[count++] = item.hash;
+        }
+        Arrays.sort(hashes, 0, count);
+        int collisions = 0;
+        for (int i = 1; i < count; i++) {
+            if (hashes[i] == hashes[i - 1]) collisions++;
+        }
+        HashTableStats snapshot = new HashTableStats(size, capacity, deleted, loadFactor, stats, histogram,
+                expectedProbeLength(), count == 0 ? 0 : (double) collisions / count);
+        lastStats = snapshot;
+        return snapshot;
+    }
+
+    //Средняя длина проб до элемента при равномерном хешировании и текущем заполнении
+    private double expectedProbeLength() {
+        double load = Math.min((double) size / capacity, 0.99);
+        if (load == 0) return 1;
+        return switch (probing) {
+            case DOUBLE_HASHING -> Math.log(1 / (1 - load)) / load;
+            case ROBIN_HOOD -> (1 + 1 / (1 - load)) / 2;
+            case BUCKETIZED -> 1;
+            //Доля элементов во второй корзине растёт с заполнением
+            case CUCKOO -> 1 + load / 2;
+        };
+    }
+
+    HashTableStats.Recorder recorder() {
+        return stats;
+    }
+
+    HashTableStats lastStats() {
+        return lastStats;
+    }
+
+    float loadFactor() {
+        return loadFactor;
+    }
+
+    //Ёмкость и число удалённых ячеек, для тестов
+    int capacity() {
+        return capacity;
+    }
+
+    int deletedCount() {
+        return deleted;
+    }
+
+    boolean isMigrating() {
+        return oldData != null;
+    }
+
+    //Снимок таблицы на текущий момент за O(1): таблица только для чтения на тех же массивах и элементах.
+    //Таблица копирует массив ссылок перед первым изменением после снимка (элементы не копируются),
+    //поэтому снимок можно читать и обходить из другого потока, пока таблица изменяется
+    public HashTable<K, V> snapshot() {
+        if (readOnly) return this;
+        finishMigration();
+        if (snapshots != null && sharedArrays && hasSnapshots()) {
+            //Изменений после последнего снимка не было
+            HashTable<K, V> last = snapshots.get(snapshots.size() - 1).get();
+            if (last != null) return last;
+        }
+        HashTable<K, V> snapshot = new HashTable<>(this, true);
+        if (snapshots == null) snapshots = new ArrayList<>();
+        snapshots.add(new WeakReference<>(snapshot));
+        sharedArrays = true;
+        return snapshot;
+    }
+
+    //Вызывается в начале каждой изменяющей операции
+    private void beforeWrite() {
+        if (sharedArrays) {
+            if (readOnly) throw new UnsupportedOperationException("Снимок только для чтения");
+            data = data.clone();
+            if (ctrl != null) ctrl = ctrl.clone();
+            sharedArrays = false;
+        }
     }
 
-    private int hashFunction1(Object key) {
-        return Math.abs((key.hashCode() * CONST) % capacity);
+    //Есть ли живые снимки, заодно убирает собранные сборщиком
+    private boolean hasSnapshots() {
+        if (snapshots == null) return false;
+        snapshots.removeIf(ref -> ref.get() == null);
+        if (snapshots.isEmpty()) snapshots = null;
+        return snapshots != null;
     }
 
-    private int hashFunction2(Object key) {
-        return Math.abs(((key.hashCode() * CONST) + 1) % capacity);
+    //Замена значения элемента таблицы. Пока живы снимки, элемент может быть виден им,
+    //поэтому в его ячейку кладётся копия с новым значением
+    private V setValue(Item<K, V> item, V value) {
+        if (!hasSnapshots()) return item.setValue(value);
+        Item<K, V>[] table = data;
+        int index = findIndex(table, item.getKey(), item.hash);
+        if (index == -1 || table[index] != item) {
+            table = oldData;
+            index = findIndex(table, item.getKey(), item.hash);
+        }
+        table[index] = new Item<>(item.getKey(), value, item.hash);
+        return item.getValue();
+    }
+
+    //Неизменяемая копия с совершенным хешированием, для таблиц, которые после загрузки только читаются
+    public FrozenHashTable<K, V> freeze() {
+        return FrozenHashTable.copyOf(this);
+    }
+
+    //Сохранение раскладки ячеек в файл, который MappedHashTable.open отображает в память без повторной вставки
+    public void save(Path file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        //Файл читается двойным хешированием с зерном таблицы, другие раскладки сохраняются через копию
+        if (probing != Probing.DOUBLE_HASHING) {
+            HashTable<K, V> copy = new HashTable<>(capacity, loadFactor, ResizeMode.FULL, addressing);
+            copy.seed = 0;
+            copy.putAll(this);
+            copy.save(file, keyCodec, valueCodec);
+            return;
+        }
+        finishMigration();
+        try (MappedHashTable.Writer<K, V> writer = new MappedHashTable.Writer<>(file, keyCodec, valueCodec,
+                capacity, loadFactor, size, addressing, seed, hardened, sipKey0, sipKey1)) {
+            for (Item<K, V> item : data) {
+                if (item == null) {
+                    writer.free();
+                } else if (item == DELETED) {
+                    writer.deleted();
+                } else {
+                    writer.entry(item.hash, item.getKey(), item.getValue());
+                }
+            }
+            writer.commit();
+        }
     }
 
     @Override
@@ -70,14 +1308,15 @@ public class HashTable<K, V> implements Map<K, V> {
     @Override
     public boolean containsKey(Object key) {
         if (key == null) throw new NullPointerException("Ключ не может быть null");
-        return get(key) != null;
+        return findItem(key) != null;
     }
 
     @Override
     public boolean containsValue(Object value) {
         if (value == null) throw new NullPointerException("Значение не может быть null");
-        for (Map.Entry<K, V> item : entrySet()) {
-            if (item.getValue().equals(value)) {
+        finishMigration();
+        for (Item<K, V> item : data) {
+            if (item != null && item != DELETED && item.getValue().equals(value)) {
                 return true;
             }
         }
@@ -86,87 +1325,235 @@ public class HashTable<K, V> implements Map<K, V> {
 
     @Override
     public V get(Object key) {
-        if (key == null) throw new NullPointerException("Ключ не может быть null");
-        for (Map.Entry<K, V> item : entrySet()) {
-            if (item.getKey().equals(key)) {
-                return item.getValue();
-            }
+        Item<K, V> item = getItem(key);
+        if (stats != null) {
+            if (item == null) stats.getMisses++;
+            else stats.getHits++;
+            stats.probes(countProbes(key, spread(key)));
         }
-        return null;
+        return item == null ? null : item.getValue();
     }
 
     @Override
     public V put(K key, V value) {
         if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
-        int hash1 = hashFunction1(key);
-        int hash2 = hashFunction2(key);
-        if (data[hash1] == null) {
-            data[hash1] = new Item<>(key, value);
-            size++;
-        } else if (data[hash1].getKey().equals(key)) {
-            V oldValue = data[hash1].getValue();
-            data[hash1] = new Item<>(key, value);
-            return oldValue;
-        } else {
-            int i = 1;
-            while (true) {
-                int hash = (hash1 + i * hash2) % capacity;
-                if (data[hash] == null) {
-                    data[hash] = new Item<>(key, value);
-                    size++;
-                    break;
-                } else if (data[hash].getKey().equals(key)) {
-                    V oldValue = data[hash1].getValue();
-                    data[hash] = new Item<>(key, value);
-                    return oldValue;
-                }
-                i++;
-            }
+        return put(key, value, spread(key));
+    }
+
+    private V put(K key, V value, int hash) {
+        beforeWrite();
+        migrateStep();
+        int slot = findSlot(data, key, hash);
+        Item<K, V> item = slot >= 0 ? data[slot] : findOldItem(key, hash);
+        if (stats != null) {
+            if (item == null) stats.putMisses++;
+            else stats.putHits++;
+            stats.probes(countProbes(key, hash));
         }
-        if ((loadFactor * capacity) <= size) {
-            updateTable();
+        if (item != null) {
+            return setValue(item, value);
         }
+        insertAt(slot, key, value, hash);
         return null;
     }
 
     @Override
     public V remove(Object key) {
         if (key == null) throw new NullPointerException("Ключ не может быть null");
-        boolean contains = false;
-        int hash1 = hashFunction1(key);
-        int hash2 = hashFunction2(key);
-        int hash = -1;
-        int i = -1;
-        while (i != capacity - 1) {
-            i++;
-            hash = (hash1 + i * hash2) % capacity;
-            Item<K, V> item = data[hash];
-            if (item != null && item.getKey().equals(key)) {
-                contains = true;
-                break;
-            }
-        }
-        if (!contains) return null;
-        V removed = data[hash].getValue();
-        data[hash] = null;
-        size--;
-        return removed;
+        beforeWrite();
+        migrateStep();
+        int hash = spread(key);
+        if (stats != null) {
+            stats.probes(countProbes(key, hash));
+            V removed = removeAt(findIndex(data, key, hash), key, hash);
+            if (removed == null) stats.removeMisses++;
+            else stats.removeHits++;
+            return removed;
+        }
+        return removeAt(findIndex(data, key, hash), key, hash);
     }
 
+    //Таблица расширяется один раз под size + m.size() элементов, затем элементы вставляются группами
     @Override
     public void putAll(Map<? extends K, ? extends V> m) {
         if (m == null) throw new NullPointerException("Map не может быть null");
-        for (Map.Entry<? extends K, ? extends V> item : m.entrySet()) {
-            put(item.getKey(), item.getValue());
+        if (m.isEmpty()) return;
+        beforeWrite();
+        if (stats != null) {
+            for (Map.Entry<? extends K, ? extends V> item : m.entrySet()) {
+                put(item.getKey(), item.getValue());
+            }
+            return;
+        }
+        ensureCapacity((int) Math.min(MAX_CAPACITY, (long) size + m.size()));
+        Object[] keys = new Object[BATCH_GROUP];
+        Object[] values = new Object[BATCH_GROUP];
+        Batch<K, V> batch = new Batch<>();
+        Iterator<? extends Map.Entry<? extends K, ? extends V>> it = m.entrySet().iterator();
+        while (it.hasNext()) {
+            int n = 0;
+            while (n < BATCH_GROUP && it.hasNext()) {
+                Map.Entry<? extends K, ? extends V> entry = it.next();
+                keys[n] = entry.getKey();
+                values[n++] = entry.getValue();
+            }
+            prefetch(keys, 0, n, batch);
+            for (int j = 0; j < n; j++) {
+                K key = (K) keys[j];
+                V value = (V) values[j];
+                if (value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+                //Вставки не убирают элементы из таблицы, поэтому найденный элемент можно обновить напрямую
+                Item<K, V> item = batch.match(j, key);
+                if (item != null) {
+                    setValue(item, value);
+                } else {
+                    put(key, value, batch.hashes[j]);
+                }
+            }
+        }
+    }
+
+    //Пакетный поиск: out[i] - значение для keys[i] или null. Возвращает число найденных ключей
+    public int getAll(K[] keys, V[] out) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(out);
+        if (out.length < keys.length) throw new IllegalArgumentException("Неправильный размер " + out.length);
+        int found = 0;
+        if (stats != null) {
+            for (int i = 0; i < keys.length; i++) {
+                if ((out[i] = get(keys[i])) != null) found++;
+            }
+            return found;
+        }
+        Batch<K, V> batch = new Batch<>();
+        for (int i = 0; i < keys.length; i += BATCH_GROUP) {
+            int n = Math.min(BATCH_GROUP, keys.length - i);
+            for (int j = 0; j < n && oldData != null; j++) {
+                migrateStep();
+            }
+            prefetch(keys, i, n, batch);
+            for (int j = 0; j < n; j++) {
+                K key = keys[i + j];
+                Item<K, V> item = batch.match(j, key);
+                if (item == null) {
+                    item = findItem(key, batch.hashes[j]);
+                }
+                if (item != null) {
+                    out[i + j] = item.getValue();
+                    found++;
+                } else {
+                    out[i + j] = null;
+                }
+            }
+        }
+        return found;
+    }
+
+    //Пакетное удаление, возвращает true, если таблица изменилась
+    public boolean removeAll(Collection<?> keys) {
+        Objects.requireNonNull(keys);
+        beforeWrite();
+        boolean modified = false;
+        if (stats != null) {
+            for (Object key : keys) {
+                if (remove(key) != null) modified = true;
+            }
+            return modified;
+        }
+        Object[] group = new Object[BATCH_GROUP];
+        Batch<K, V> batch = new Batch<>();
+        Iterator<?> it = keys.iterator();
+        while (it.hasNext()) {
+            int n = 0;
+            while (n < BATCH_GROUP && it.hasNext()) {
+                group[n++] = it.next();
+            }
+            prefetch(group, 0, n, batch);
+            for (int j = 0; j < n; j++) {
+                migrateStep();
+                Object key = group[j];
+                int hash = batch.hashes[j];
+                //Удаление может сдвинуть элементы или уплотнить таблицу, поэтому ячейка проверяется заново
+                int home = batch.homes[j];
+                int index = home < data.length && data[home] == batch.items[j] && batch.match(j, key) != null
+                        ? home : findIndex(data, key, hash);
+                if (removeAt(index, key, hash) != null) modified = true;
+            }
+        }
+        return modified;
+    }
+
+    //Пакетные операции обрабатывают ключи группами по BATCH_GROUP: сначала считаются хеши всей группы,
+    //затем читаются начальные ячейки и хеши лежащих в них элементов. Эти чтения независимы,
+    //и промахи кэша по ним перекрываются, а equals и полный поиск идут уже по загруженным данным
+    private static final int BATCH_GROUP = 8;
+
+    private static final class Batch<K, V> {
+        final int[] hashes = new int[BATCH_GROUP];
+        final int[] homes = new int[BATCH_GROUP];
+        final Item<K, V>[] items = new Item[BATCH_GROUP];
+        int matches;  //Биты ключей, у которых хеш совпал с хешем элемента в начальной ячейке
+
+        //Элемент с ключом key из начальной ячейки или null, тогда нужен полный поиск
+        Item<K, V> match(int j, Object key) {
+            return (matches & (1 << j)) != 0 && items[j].getKey().equals(key) ? items[j] : null;
+        }
+    }
+
+    private void prefetch(Object[] keys, int from, int n, Batch<K, V> batch) {
+        int[] hashes = batch.hashes;
+        int[] homes = batch.homes;
+        Item<K, V>[] items = batch.items;
+        for (int j = 0; j < n; j++) {
+            Object key = keys[from + j];
+            if (key == null) throw new NullPointerException("Ключ не может быть null");
+            hashes[j] = spread(key);
+        }
+        Item<K, V>[] table = data;
+        for (int j = 0; j < n; j++) {
+            homes[j] = homeIndex(hashes[j], table.length);
+            items[j] = table[homes[j]];
+        }
+        int matches = 0;
+        for (int j = 0; j < n; j++) {
+            Item<K, V> item = items[j];
+            if (item != null && item != DELETED && item.hash == hashes[j]) matches |= 1 << j;
+        }
+        batch.matches = matches;
+    }
+
+    //Первая ячейка на пути проб, для BUCKETIZED - начало группы
+    private int homeIndex(int hash, int capacity) {
+        if (probing == Probing.BUCKETIZED) {
+            return ((hash >>> 7) & ((capacity >>> 3) - 1)) << 3;
+        }
+        if (probing == Probing.CUCKOO) {
+            return cuckooBucket(hash, Integer.highestOneBit(capacity) / CUCKOO_WAYS) * CUCKOO_WAYS;
         }
+        return hashFunction1(hash, capacity);
     }
 
     @Override
     public void clear() {
-        if (capacity < default_capacity) {
-            data = new Item[capacity];
-        } else data = new Item[default_capacity];
+        if (readOnly) throw new UnsupportedOperationException("Снимок только для чтения");
+        if (retainCapacityOnClear && !sharedArrays) {
+            Arrays.fill(data, null);
+            if (ctrl != null) Arrays.fill(ctrl, EMPTY);
+        } else {
+            //Общие со снимком массивы не очищаются, вместо них создаются новые
+            if (!retainCapacityOnClear) {
+                capacity = Math.min(capacity, initialCapacity(default_capacity, addressing));
+                stashSize = STASH_SIZE;
+            }
+            data = newTable(capacity);
+            ctrl = newCtrl(data.length);
+            sharedArrays = false;
+        }
+        oldData = null;
+        migrationEvent = null;  //Прерванный перенос не записывается
+        deleted = 0;
         size = 0;
+        modCount++;
     }
 
     @Override
@@ -196,21 +1583,19 @@ public class HashTable<K, V> implements Map<K, V> {
     @Override
     public V getOrDefault(Object key, V defaultValue) {
         if (key == null) throw new NullPointerException("Ключ не может быть null");
-        if (keySet().contains(key)) return get(key);
-        return defaultValue;
+        V value = get(key);
+        return value == null ? defaultValue : value;
     }
 
     @Override
     public void forEach(BiConsumer<? super K, ? super V> action) {
         Objects.requireNonNull(action);
-        if (entrySet == null) {
-            entrySet = entrySet();
-        }
-        int size = entrySet.size();
-        for (Entry<K, V> item : entrySet) {
-            action.accept(item.getKey(), item.getValue());
-            if (entrySet.size() != size) {
-                throw new ConcurrentModificationException();
+        finishMigration();
+        int expectedModCount = modCount;
+        for (Item<K, V> item : data) {
+            if (item != null && item != DELETED) {
+                action.accept(item.getKey(), item.getValue());
+                checkModCount(expectedModCount);
             }
         }
     }
@@ -229,6 +1614,10 @@ public class HashTable<K, V> implements Map<K, V> {
             return getIterator(KEYS);
         }
 
+        public Spliterator<K> spliterator() {
+            return new HashTableSpliterator<>(KEYS, 0, -1, 0, 0);
+        }
+
         public int size() {
             return size;
         }
@@ -241,6 +1630,10 @@ public class HashTable<K, V> implements Map<K, V> {
             return HashTable.this.remove(o) != null;
         }
 
+        public boolean removeAll(Collection<?> c) {
+            return HashTable.this.removeAll(c);
+        }
+
         public void clear() {
             HashTable.this.clear();
         }
@@ -251,6 +1644,10 @@ public class HashTable<K, V> implements Map<K, V> {
             return getIterator(VALUES);
         }
 
+        public Spliterator<V> spliterator() {
+            return new HashTableSpliterator<>(VALUES, 0, -1, 0, 0);
+        }
+
         public int size() {
             return size;
         }
@@ -269,6 +1666,10 @@ public class HashTable<K, V> implements Map<K, V> {
             return getIterator(ENTRIES);
         }
 
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return new HashTableSpliterator<>(ENTRIES, 0, -1, 0, 0);
+        }
+
         public boolean add(Map.Entry<K, V> o) {
             return super.add(o);
         }
@@ -300,6 +1701,7 @@ public class HashTable<K, V> implements Map<K, V> {
     }
 
     private <T> Iterator<T> getIterator(int type) {
+        finishMigration();
         if (size == 0) {
             return Collections.emptyIterator();
         } else {
@@ -307,50 +1709,301 @@ public class HashTable<K, V> implements Map<K, V> {
         }
     }
 
+    //Элемент для итератора entrySet. Если есть снимки, элемент общий с ними, и его setValue
+    //не должен менять значение на месте: выдаётся копия, которая меняет значение через replace
+    private Map.Entry<K, V> entry(Item<K, V> item) {
+        return readOnly || snapshots != null ? new SharedEntry(item) : item;
+    }
+
+    private final class SharedEntry extends Item<K, V> {
+        SharedEntry(Item<K, V> item) {
+            super(item.getKey(), item.getValue(), item.hash);
+        }
+
+        @Override
+        public V setValue(V newValue) {
+            V oldValue = replace(getKey(), newValue);
+            super.setValue(newValue);
+            return oldValue;
+        }
+    }
+
+    //Итератор по массиву data: индекс следующего элемента ищется заранее, изменение таблицы
+    //не через итератор обнаруживается по modCount
     private class HashTableIterator<T> implements Iterator<T> {
-        int index = -1;
-        int count = 0;
-        int iterSize = size;
-        int type;
+        final int type;
+        Item<K, V>[] table = data;
+        int next;  //Индекс следующего элемента или table.length
+        int last = -1;  //Индекс элемента, выданного последним
+        int expectedModCount = modCount;
+        //ROBIN_HOOD: уже выданные элементы, которые удаление перенесло из начала массива в конец
+        List<Item<K, V>> moved;
 
         HashTableIterator(int type) {
             this.type = type;
+            next = advance(0);
+        }
+
+        private int advance(int from) {
+            for (; from < table.length; from++) {
+                Item<K, V> item = table[from];
+                if (item != null && item != DELETED && (moved == null || !isMoved(item))) {
+                    return from;
+                }
+            }
+            return from;
+        }
+
+        private boolean isMoved(Item<K, V> item) {
+            for (Item<K, V> m : moved) {
+                if (m == item) return true;
+            }
+            return false;
         }
 
         @Override
         public boolean hasNext() {
-            return count < iterSize;
+            return next < table.length;
         }
 
         @Override
         public T next() {
-            index++;
-            while (index < capacity) {
-                Item<K, V> item = data[index];
-                if (item != null) {
-                    count++;
-                    return type == KEYS ? (T) item.getKey() : (type == VALUES ? (T) item.getValue() : (T) item);
-                } else {
-                    index++;
+            checkModCount(expectedModCount);
+            if (next >= table.length) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            Item<K, V> item = table[last];
+            next = advance(next + 1);
+            return type == KEYS ? (T) item.getKey() : (type == VALUES ? (T) item.getValue() : (T) entry(item));
+        }
+
+        @Override
+        public void remove() {
+            if (last == -1) {
+                throw new IllegalStateException();
+            }
+            checkModCount(expectedModCount);
+            beforeWrite();
+            //Массив мог быть скопирован, если у таблицы есть снимок
+            table = data;
+            Item<K, V> wrapped = removeSlot(last);
+            expectedModCount = modCount;
+            if (probing == Probing.ROBIN_HOOD || probing == Probing.CUCKOO) {
+                //Сдвиг назад или перенос в stash мог поставить на место удалённого ещё не выданный элемент
+                if (wrapped != null) {
+                    if (moved == null) moved = new ArrayList<>();
+                    moved.add(wrapped);
+                }
+                next = advance(last);
+            }
+            last = -1;
+        }
+    }
+
+    //Spliterator по диапазону индексов data, делится пополам по индексам.
+    //Массив и modCount фиксируются при первом обращении, а не при создании
+    private final class HashTableSpliterator<T> implements Spliterator<T> {
+        final int type;
+        Item<K, V>[] table;
+        int index;
+        int fence;  //Конец диапазона, -1 до первого обращения
+        int est;  //Оценка числа элементов, точная до первого деления
+        int expectedModCount;
+
+        HashTableSpliterator(int type, int origin, int fence, int est, int expectedModCount) {
+            this.type = type;
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+            if (fence >= 0) table = data;
+        }
+
+        private int getFence() {
+            if (fence < 0) {
+                finishMigration();
+                table = data;
+                est = size;
+                expectedModCount = modCount;
+                fence = table.length;
+            }
+            return fence;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T element(Item<K, V> item) {
+            return type == KEYS ? (T) item.getKey() : (type == VALUES ? (T) item.getValue() : (T) entry(item));
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            if (lo >= mid) return null;
+            HashTableSpliterator<T> prefix = new HashTableSpliterator<>(type, lo, mid, est >>>= 1, expectedModCount);
+            prefix.table = table;
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            while (index < hi) {
+                Item<K, V> item = table[index++];
+                if (item != null && item != DELETED) {
+                    action.accept(element(item));
+                    checkModCount(expectedModCount);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            Item<K, V>[] tab = table;
+            int i = index;
+            index = hi;
+            for (; i < hi; i++) {
+                Item<K, V> item = tab[i];
+                if (item != null && item != DELETED) {
+                    action.accept(element(item));
                 }
             }
+            checkModCount(expectedModCount);
+        }
+
+        @Override
+        public long estimateSize() {
+            getFence();
+            return est;
+        }
+
+        @Override
+        public int characteristics() {
+            int sized = fence < 0 || (index == 0 && fence == table.length && est == size) ? SIZED : 0;
+            return sized | NONNULL | (type == VALUES ? 0 : DISTINCT);
+        }
+    }
+
+    //Массовые операции в стиле ConcurrentHashMap на ForkJoinPool.commonPool().
+    //Если элементов меньше parallelismThreshold, операция выполняется в текущем потоке.
+    //Таблица не должна изменяться во время операции, иначе будет ConcurrentModificationException
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        bulk(parallelismThreshold, (k, v) -> {
+            action.accept(k, v);
             return null;
+        }, null, null);
+    }
+
+    //Свёртка преобразованных элементов, null от transformer пропускается. Порядок свёртки не определён
+    public <U> U reduce(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        return bulk(parallelismThreshold, transformer, reducer, null);
+    }
+
+    //Первый найденный не-null результат searchFunction, остальные задачи после этого прекращаются
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        Objects.requireNonNull(searchFunction);
+        AtomicReference<U> found = new AtomicReference<>();
+        bulk(parallelismThreshold, searchFunction, null, found);
+        return found.get();
+    }
+
+    private <U> U bulk(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> transformer,
+                       BiFunction<? super U, ? super U, ? extends U> reducer, AtomicReference<U> found) {
+        finishMigration();
+        int expectedModCount = modCount;
+        Item<K, V>[] table = data;
+        int leaf = table.length;
+        if (parallelismThreshold < 1) parallelismThreshold = 1;
+        if (size >= parallelismThreshold) {
+            //Не больше четырёх задач на поток и не меньше parallelismThreshold элементов на задачу
+            long tasks = Math.min((long) ForkJoinPool.getCommonPoolParallelism() << 2, size / parallelismThreshold);
+            if (tasks > 1) leaf = (int) ((table.length + tasks - 1) / tasks);
+        }
+        BulkTask<K, V, U> task = new BulkTask<>(table, 0, table.length, leaf, transformer, reducer, found);
+        U result = leaf == table.length ? task.compute() : ForkJoinPool.commonPool().invoke(task);
+        checkModCount(expectedModCount);
+        return result;
+    }
+
+    private static final class BulkTask<K, V, U> extends RecursiveTask<U> {
+        private static final long serialVersionUID = 1L;
+        final Item<K, V>[] table;
+        final int lo;
+        final int hi;
+        final int leaf;  //Наибольший диапазон, который обходится без деления
+        final BiFunction<? super K, ? super V, ? extends U> transformer;
+        final BiFunction<? super U, ? super U, ? extends U> reducer;  //null для forEach и search
+        final AtomicReference<U> found;  //null для forEach и reduce
+
+        BulkTask(Item<K, V>[] table, int lo, int hi, int leaf, BiFunction<? super K, ? super V, ? extends U> transformer,
+                 BiFunction<? super U, ? super U, ? extends U> reducer, AtomicReference<U> found) {
+            this.table = table;
+            this.lo = lo;
+            this.hi = hi;
+            this.leaf = leaf;
+            this.transformer = transformer;
+            this.reducer = reducer;
+            this.found = found;
+        }
+
+        @Override
+        protected U compute() {
+            if (hi - lo > leaf) {
+                int mid = (lo + hi) >>> 1;
+                BulkTask<K, V, U> left = new BulkTask<>(table, lo, mid, leaf, transformer, reducer, found);
+                left.fork();
+                U r = new BulkTask<>(table, mid, hi, leaf, transformer, reducer, found).compute();
+                U l = left.join();
+                return l == null ? r : (r == null || reducer == null ? l : reducer.apply(l, r));
+            }
+            U result = null;
+            for (int i = lo; i < hi; i++) {
+                if (found != null && found.get() != null) return null;
+                Item<K, V> item = table[i];
+                if (item == null || item == DELETED) continue;
+                U u = transformer.apply(item.getKey(), item.getValue());
+                if (u == null) continue;
+                if (found != null) {
+                    found.compareAndSet(null, u);
+                    return null;
+                }
+                result = result == null ? u : reducer.apply(result, u);
+            }
+            return result;
         }
     }
 
     @Override
     public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
         Objects.requireNonNull(function);
-        if (entrySet == null) {
-            entrySet = entrySet();
-        }
-        int size = entrySet.size();
-        for (Entry<K, V> item : entrySet) {
-            Objects.requireNonNull(
-                    item.setValue(function.apply(item.getKey(), item.getValue()))
-            );
-            if (entrySet.size() != size) {
-                throw new ConcurrentModificationException();
+        beforeWrite();
+        finishMigration();
+        int expectedModCount = modCount;
+        boolean shared = hasSnapshots();
+        Item<K, V>[] table = data;
+        for (int i = 0; i < table.length; i++) {
+            Item<K, V> item = table[i];
+            if (item != null && item != DELETED) {
+                V newValue = function.apply(item.getKey(), item.getValue());
+                if (newValue == null) {
+                    throw new NullPointerException("Новое значение не может быть null");
+                }
+                checkModCount(expectedModCount);
+                if (shared) {
+                    table[i] = new Item<>(item.getKey(), newValue, item.hash);
+                } else {
+                    item.setValue(newValue);
+                }
             }
         }
     }
@@ -358,17 +2011,26 @@ public class HashTable<K, V> implements Map<K, V> {
     @Override
     public V putIfAbsent(K key, V value) {
         if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
-        if (containsKey(key)) return get(key);
-        put(key, value);
+        beforeWrite();
+        migrateStep();
+        int hash = spread(key);
+        int slot = findSlot(data, key, hash);
+        Item<K, V> item = slot >= 0 ? data[slot] : findOldItem(key, hash);
+        if (item != null) return item.getValue();
+        insertAt(slot, key, value, hash);
         return value;
     }
 
     @Override
     public boolean remove(Object key, Object value) {
         if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
-        V current = get(key);
-        if (current == null || current != value) return false;
-        remove(key);
+        beforeWrite();
+        migrateStep();
+        int hash = spread(key);
+        int slot = findIndex(data, key, hash);
+        Item<K, V> item = slot >= 0 ? data[slot] : findOldItem(key, hash);
+        if (item == null || !item.getValue().equals(value)) return false;
+        removeAt(slot, key, hash);
         return true;
     }
 
@@ -376,93 +2038,110 @@ public class HashTable<K, V> implements Map<K, V> {
     public boolean replace(K key, V oldValue, V newValue) {
         if (newValue == null || oldValue == null || key == null)
             throw new NullPointerException("Значение не может быть null");
-        if (!keySet().contains(key)) return false;
-        for (Entry<K, V> item : entrySet) {
-            if (item.getKey() == key && item.getValue() == oldValue) {
-                item.setValue(newValue);
-                return true;
-            }
-        }
-        return false;
+        beforeWrite();
+        Item<K, V> item = findItem(key);
+        if (item == null || !item.getValue().equals(oldValue)) return false;
+        setValue(item, newValue);
+        return true;
     }
 
     @Override
     public V replace(K key, V value) {
         if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
-        if (!keySet().contains(key)) return null;
-        return put(key, value);
+        beforeWrite();
+        Item<K, V> item = findItem(key);
+        return item == null ? null : setValue(item, value);
     }
 
     @Override
     public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
         if (key == null || mappingFunction == null)
             throw new NullPointerException("Ключ или функция не может быть null");
-        Objects.requireNonNull(mappingFunction);
-        if (keySet().contains(key)) {
-            return get(key);
-        } else {
-            V newValue = mappingFunction.apply(key);
-            if (newValue == null) {
-                throw new NullPointerException("Новое значение не может быть null");
-            }
-            put(key, newValue);
-            return newValue;
+        beforeWrite();
+        migrateStep();
+        int hash = spread(key);
+        int slot = findSlot(data, key, hash);
+        Item<K, V> item = slot >= 0 ? data[slot] : findOldItem(key, hash);
+        if (item != null) return item.getValue();
+        int expectedModCount = modCount;
+        Item<K, V>[] table = data;
+        int expectedMigrateIndex = migrateIndex;
+        V newValue = mappingFunction.apply(key);
+        if (newValue == null) {
+            throw new NullPointerException("Новое значение не может быть null");
         }
+        checkModCount(expectedModCount);
+        if (migrated(table, expectedMigrateIndex)) slot = findSlot(data, key, hash);
+        insertAt(slot, key, newValue, hash);
+        return newValue;
     }
 
     @Override
     public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         if (key == null || remappingFunction == null)
             throw new NullPointerException("Ключ или функция не может быть null");
-        Objects.requireNonNull(remappingFunction);
-        if (keySet().contains(key)) {
-            V newValue = remappingFunction.apply(key, get(key));
-            if (newValue == null) {
-                throw new NullPointerException("Новое значение не может быть null");
-            }
-            put(key, newValue);
-            return newValue;
+        beforeWrite();
+        Item<K, V> item = findItem(key);
+        if (item == null) return null;
+        V newValue = remappingFunction.apply(key, item.getValue());
+        if (newValue == null) {
+            throw new NullPointerException("Новое значение не может быть null");
         }
-        return null;
+        setValue(item, newValue);
+        return newValue;
     }
 
     @Override
     public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         if (key == null || remappingFunction == null)
             throw new NullPointerException("Ключ или функция не может быть null");
-        V oldValue = get(key);
-        V newValue = remappingFunction.apply(key, oldValue);
-        if (oldValue != null) {
-            if (newValue != null) {
-                put(key, newValue);
-                return newValue;
-            } else {
-                remove(key);
-                return null;
-            }
-        } else {
+        beforeWrite();
+        migrateStep();
+        int hash = spread(key);
+        int slot = findIndex(data, key, hash);
+        Item<K, V> item = slot >= 0 ? data[slot] : findOldItem(key, hash);
+        int expectedModCount = modCount;
+        Item<K, V>[] table = data;
+        int expectedMigrateIndex = migrateIndex;
+        V newValue = remappingFunction.apply(key, item == null ? null : item.getValue());
+        if (item == null) {
             return null;
         }
+        checkModCount(expectedModCount);
+        if (migrated(table, expectedMigrateIndex)) slot = findIndex(data, key, hash);
+        if (newValue != null) {
+            setValue(item, newValue);
+            return newValue;
+        }
+        removeAt(slot, key, hash);
+        return null;
     }
 
     @Override
     public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
         if (key == null || value == null || remappingFunction == null)
             throw new NullPointerException("Ключ, значение или функция не может быть null");
-        Objects.requireNonNull(remappingFunction);
-        if (keySet().contains(key)) {
-            V newValue = remappingFunction.apply(get(key), value);
-            if (newValue != null) {
-                put(key, newValue);
-                return newValue;
-            } else {
-                remove(key);
-                return null;
-            }
-        } else {
-            put(key, value);
+        beforeWrite();
+        migrateStep();
+        int hash = spread(key);
+        int slot = findSlot(data, key, hash);
+        Item<K, V> item = slot >= 0 ? data[slot] : findOldItem(key, hash);
+        if (item == null) {
+            insertAt(slot, key, value, hash);
             return value;
         }
+        int expectedModCount = modCount;
+        Item<K, V>[] table = data;
+        int expectedMigrateIndex = migrateIndex;
+        V newValue = remappingFunction.apply(item.getValue(), value);
+        checkModCount(expectedModCount);
+        if (migrated(table, expectedMigrateIndex)) slot = findIndex(data, key, hash);
+        if (newValue != null) {
+            setValue(item, newValue);
+            return newValue;
+        }
+        removeAt(slot, key, hash);
+        return null;
     }
 
     @Override
@@ -475,11 +2154,10 @@ public class HashTable<K, V> implements Map<K, V> {
         }
         if (t.size() != size())
             return false;
+        finishMigration();
         try {
-            for (Map.Entry<K, V> e : entrySet()) {
-                K key = e.getKey();
-                V value = e.getValue();
-                if (!value.equals(t.get(key))) {
+            for (Item<K, V> item : data) {
+                if (item != null && item != DELETED && !item.getValue().equals(t.get(item.getKey()))) {
                     return false;
                 }
             }
@@ -491,9 +2169,12 @@ public class HashTable<K, V> implements Map<K, V> {
 
     @Override
     public int hashCode() {
+        finishMigration();
         int hash = 0;
-        for (Entry<K, V> entry : entrySet) {
-            hash += entry.hashCode();
+        for (Item<K, V> item : data) {
+            if (item != null && item != DELETED) {
+                hash += item.getKey().hashCode() ^ item.getValue().hashCode();
+            }
         }
         return hash;
     }
@@ -522,11 +2203,17 @@ public class HashTable<K, V> implements Map<K, V> {
     public static class Item<K, V> implements Map.Entry<K, V> {
         private final K key;
         private V value;
+        int hash;  //Хеш ключа, посчитанный таблицей, пересчитывается при переходе на SipHash
 
         //Конструктор для пары ключ-значение
         public Item(K key, V value) {
+            this(key, value, key == null ? 0 : key.hashCode());
+        }
+
+        Item(K key, V value, int hash) {
             this.key = key;
             this.value = value;
+            this.hash = hash;
         }
 
         //Получение ключа
@@ -0,0 +1,35 @@
+//Атрибуты HashTable для JMX. Счётчики читаются без блокировки и могут немного отставать,
+//показатели раскладки берутся из последнего снимка HashTable.stats()
+public interface HashTableMXBean {
+    int getSize();
+
+    int getCapacity();
+
+    float getLoadFactor();
+
+    long getGetHits();
+
+    long getGetMisses();
+
+    long getPutHits();
+
+    long getPutMisses();
+
+    long getRemoveHits();
+
+    long getRemoveMisses();
+
+    long getResizeCount();
+
+    long getResizeTimeNanos();
+
+    long getMaxResizeTimeNanos();
+
+    long[] getLookupProbeHistogram();
+
+    double getAverageProbeLength();
+
+    double getClusteringScore();
+
+    double getHashCollisionRate();
+}
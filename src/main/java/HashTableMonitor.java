@@ -0,0 +1,110 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+//Регистрация HashTable в платформенном MBeanServer под именем HashTable:type=HashTable,name=<name>
+public final class HashTableMonitor implements HashTableMXBean {
+    private final HashTable<?, ?> table;
+    private final HashTableStats.Recorder recorder;
+
+    private HashTableMonitor(HashTable<?, ?> table) {
+        this.table = table;
+        table.enableStats();
+        this.recorder = table.recorder();
+    }
+
+    public static ObjectName register(HashTable<?, ?> table, String name) throws JMException {
+        ObjectName objectName = new ObjectName("HashTable", "name", ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(new HashTableMonitor(table), objectName);
+        return objectName;
+    }
+
+    public static void unregister(ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
+    @Override
+    public int getSize() {
+        return table.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return table.capacity();
+    }
+
+    @Override
+    public float getLoadFactor() {
+        return table.loadFactor();
+    }
+
+    @Override
+    public long getGetHits() {
+        return recorder.getHits;
+    }
+
+    @Override
+    public long getGetMisses() {
+        return recorder.getMisses;
+    }
+
+    @Override
+    public long getPutHits() {
+        return recorder.putHits;
+    }
+
+    @Override
+    public long getPutMisses() {
+        return recorder.putMisses;
+    }
+
+    @Override
+    public long getRemoveHits() {
+        return recorder.removeHits;
+    }
+
+    @Override
+    public long getRemoveMisses() {
+        return recorder.removeMisses;
+    }
+
+    @Override
+    public long getResizeCount() {
+        return recorder.resizeCount;
+    }
+
+    @Override
+    public long getResizeTimeNanos() {
+        return recorder.resizeNanos;
+    }
+
+    @Override
+    public long getMaxResizeTimeNanos() {
+        return recorder.maxResizeNanos;
+    }
+
+    @Override
+    public long[] getLookupProbeHistogram() {
+        return recorder.probeHistogram.clone();
+    }
+
+    @Override
+    public double getAverageProbeLength() {
+        HashTableStats stats = table.lastStats();
+        return stats == null ? Double.NaN : stats.averageProbeLength();
+    }
+
+    @Override
+    public double getClusteringScore() {
+        HashTableStats stats = table.lastStats();
+        return stats == null ? Double.NaN : stats.clusteringScore();
+    }
+
+    @Override
+    public double getHashCollisionRate() {
+        HashTableStats stats = table.lastStats();
+        return stats == null ? Double.NaN : stats.hashCollisionRate();
+    }
+}
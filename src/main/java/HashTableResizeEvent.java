@@ -0,0 +1,50 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+//Событие JFR о перестройке HashTable; по умолчанию записываются перестройки дольше 10 мс,
+//порог меняется в настройках записи (HashTable.Resize#threshold). Для INCREMENTAL длительность -
+//от начала переноса до его последнего шага, включая операции таблицы между шагами
+@Name("HashTable.Resize")
+@Label("HashTable Resize")
+@Category("HashTable")
+@Description("Перестройка массива ячеек HashTable")
+@Threshold("10 ms")
+class HashTableResizeEvent extends jdk.jfr.Event {
+    @Label("Old Capacity")
+    int oldCapacity;
+
+    @Label("New Capacity")
+    int newCapacity;
+
+    @Label("Size")
+    int size;
+
+    @Label("Compaction")
+    @Description("Перестройка в ту же ёмкость, чтобы избавиться от удалённых ячеек")
+    boolean compaction;
+
+    private static final EventType TYPE = EventType.getEventType(HashTableResizeEvent.class);
+
+    //Пока запись события выключена, перестройка не создаёт его и не тратит на JFR ничего, кроме этой проверки
+    static HashTableResizeEvent start(int oldCapacity) {
+        if (!TYPE.isEnabled()) return null;
+        HashTableResizeEvent event = new HashTableResizeEvent();
+        event.oldCapacity = oldCapacity;
+        event.begin();
+        return event;
+    }
+
+    void finish(int newCapacity, int size) {
+        end();
+        if (shouldCommit()) {
+            this.newCapacity = newCapacity;
+            this.size = size;
+            compaction = oldCapacity == newCapacity;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.Arrays;
+
+//Снимок статистики HashTable: счётчики операций с момента enableStats(), перестройки и раскладка ячеек.
+//clusteringScore - средняя длина проб хранимых элементов, делённая на ожидаемую при равномерном хешировании
+//(для BUCKETIZED ожидается 1), hashCollisionRate - доля элементов, хеш которых совпал с хешем другого элемента
+public final class HashTableStats {
+    private final int size;
+    private final int capacity;
+    private final int deleted;
+    private final float loadFactor;
+    private final long getHits;
+    private final long getMisses;
+    private final long putHits;
+    private final long putMisses;
+    private final long removeHits;
+    private final long removeMisses;
+    private final long resizeCount;
+    private final long resizeNanos;
+    private final long maxResizeNanos;
+    private final long[] lookupProbeHistogram;
+    private final int[] storedProbeHistogram;
+    private final double averageProbeLength;
+    private final double clusteringScore;
+    private final double hashCollisionRate;
+
+    HashTableStats(int size, int capacity, int deleted, float loadFactor, Recorder recorder,
+                   int[] storedProbeHistogram, double expectedProbeLength, double hashCollisionRate) {
+        this.size = size;
+        this.capacity = capacity;
+        this.deleted = deleted;
+        this.loadFactor = loadFactor;
+        this.getHits = recorder.getHits;
+        this.getMisses = recorder.getMisses;
+        this.putHits = recorder.putHits;
+        this.putMisses = recorder.putMisses;
+        this.removeHits = recorder.removeHits;
+        this.removeMisses = recorder.removeMisses;
+        this.resizeCount = recorder.resizeCount;
+        this.resizeNanos = recorder.resizeNanos;
+        this.maxResizeNanos = recorder.maxResizeNanos;
+        this.lookupProbeHistogram = recorder.probeHistogram.clone();
+        this.storedProbeHistogram = storedProbeHistogram;
+        long total = 0;
+        for (int i = 0; i < storedProbeHistogram.length; i++) {
+            total += (long) (i + 1) * storedProbeHistogram[i];
+        }
+        this.averageProbeLength = size == 0 ? 0 : (double) total / size;
+        this.clusteringScore = size == 0 ? 0 : averageProbeLength / expectedProbeLength;
+        this.hashCollisionRate = hashCollisionRate;
+    }
+
+    //Счётчики, которые ведёт таблица при включённой статистике; не потокобезопасны, как и сама таблица
+    static final class Recorder {
+        //Последний элемент гистограммы - пробы длиной MAX_PROBES и больше
+        static final int MAX_PROBES = 64;
+        long getHits;
+        long getMisses;
+        long putHits;
+        long putMisses;
+        long removeHits;
+        long removeMisses;
+        long resizeCount;
+        long resizeNanos;
+        long maxResizeNanos;
+        final long[] probeHistogram = new long[MAX_PROBES];
+
+        void probes(int count) {
+            probeHistogram[Math.min(count, MAX_PROBES) - 1]++;
+        }
+
+        void resized(long nanos) {
+            resizeCount++;
+            resizeNanos += nanos;
+            maxResizeNanos = Math.max(maxResizeNanos, nanos);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int deletedSlots() {
+        return deleted;
+    }
+
+    public float loadFactor() {
+        return loadFactor;
+    }
+
+    //Фактическое заполнение: элементы и удалённые ячейки на ёмкость
+    public double load() {
+        return capacity == 0 ? 0 : (double) (size + deleted) / capacity;
+    }
+
+    public long getHits() {
+        return getHits;
+    }
+
+    public long getMisses() {
+        return getMisses;
+    }
+
+    public long putHits() {
+        return putHits;
+    }
+
+    public long putMisses() {
+        return putMisses;
+    }
+
+    public long removeHits() {
+        return removeHits;
+    }
+
+    public long removeMisses() {
+        return removeMisses;
+    }
+
+    public long resizeCount() {
+        return resizeCount;
+    }
+
+    public long resizeNanos() {
+        return resizeNanos;
+    }
+
+    public long maxResizeNanos() {
+        return maxResizeNanos;
+    }
+
+    //Длины проб в get, put и remove: result[i] - число операций с i + 1 пробами
+    public long[] lookupProbeHistogram() {
+        return lookupProbeHistogram.clone();
+    }
+
+    //Длины проб до хранимых элементов: result[i] - число элементов, которые находятся за i + 1 проб
+    public int[] storedProbeHistogram() {
+        return storedProbeHistogram.clone();
+    }
+
+    public double averageProbeLength() {
+        return averageProbeLength;
+    }
+
+    public double clusteringScore() {
+        return clusteringScore;
+    }
+
+    public double hashCollisionRate() {
+        return hashCollisionRate;
+    }
+
+    @Override
+    public String toString() {
+        return "HashTableStats{size=" + size + ", capacity=" + capacity + ", deleted=" + deleted
+                + ", loadFactor=" + loadFactor + ", load=" + String.format("%.3f", load())
+                + ", get=" + getHits + "/" + getMisses + ", put=" + putHits + "/" + putMisses
+                + ", remove=" + removeHits + "/" + removeMisses
+                + ", resizes=" + resizeCount + " (" + resizeNanos / 1_000_000 + " ms, max " + maxResizeNanos / 1_000_000 + " ms)"
+                + ", averageProbeLength=" + String.format("%.3f", averageProbeLength)
+                + ", clusteringScore=" + String.format("%.3f", clusteringScore)
+                + ", hashCollisionRate=" + String.format("%.4f", hashCollisionRate)
+                + ", storedProbeHistogram=" + Arrays.toString(storedProbeHistogram) + "}";
+    }
+}
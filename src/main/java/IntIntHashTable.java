@@ -0,0 +1,354 @@
+import java.util.*;
+
+//Таблица int -> int без упаковки ключей: ключи и значения лежат в параллельных массивах,
+//адресация и коэффициент заполнения такие же, как в HashTable
+public class IntIntHashTable {
+    private static final int CONST = 17;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+    //Состояния ячеек
+    private static final byte FREE = 0;
+    private static final byte FULL = 1;
+    private static final byte DELETED = 2;
+    private int size = 0;
+    private int modCount = 0;  //Число структурных изменений, для итераторов
+    private int deleted = 0;  //Число удалённых ячеек
+    private int capacity;  //Размерность таблицы
+    private final float loadFactor;  //Коэффициент заполнения
+    private int[] keys;
+    private int[] values;
+    private byte[] states;
+    private Map<Integer, Integer> map;
+
+    public IntIntHashTable(int capacity, float loadFactor) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Неправильный размер " + capacity);
+        }
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Неправильный коэффициент " + loadFactor);
+        }
+        this.capacity = capacity;
+        this.loadFactor = loadFactor;
+        keys = new int[capacity];
+        values = new int[capacity];
+        states = new byte[capacity];
+    }
+
+    public IntIntHashTable(int capacity) {
+        this(capacity, 0.75f);
+    }
+
+    public IntIntHashTable() {
+        this(16, 0.75f);
+    }
+
+    private static int hash(int key) {
+        return key;
+    }
+
+    private static int hashFunction1(int hash, int capacity) {
+        return Math.abs((hash * CONST) % capacity);
+    }
+
+    private static int hashFunction2(int hash, int capacity) {
+        int step = Math.abs(((hash * CONST) + 1) % capacity);
+        return step == 0 ? 1 : step;
+    }
+
+    private int findIndex(int key) {
+        int hash = hash(key);
+        int index = hashFunction1(hash, capacity);
+        int step = hashFunction2(hash, capacity);
+        for (int i = 0; i < capacity; i++) {
+            byte state = states[index];
+            if (state == FREE) {
+                return -1;
+            }
+            if (state == FULL && keys[index] == key) {
+                return index;
+            }
+            index += step;
+            if (index >= capacity) index -= capacity;
+        }
+        return -1;
+    }
+
+    private static int freeIndex(byte[] states, int hash) {
+        int capacity = states.length;
+        int index = hashFunction1(hash, capacity);
+        int step = hashFunction2(hash, capacity);
+        for (int i = 0; i < capacity; i++) {
+            if (states[index] != FULL) {
+                return index;
+            }
+            index += step;
+            if (index >= capacity) index -= capacity;
+        }
+        return -1;
+    }
+
+    private void rehash(int newCapacity) {
+        while (true) {
+            int[] newKeys = new int[newCapacity];
+            int[] newValues = new int[newCapacity];
+            byte[] newStates = new byte[newCapacity];
+            if (moveItems(newKeys, newValues, newStates)) {
+                keys = newKeys;
+                values = newValues;
+                states = newStates;
+                capacity = newCapacity;
+                deleted = 0;
+                modCount++;
+                return;
+            }
+            newCapacity = nextCapacity(newCapacity);
+        }
+    }
+
+    private boolean moveItems(int[] newKeys, int[] newValues, byte[] newStates) {
+        for (int i = 0; i < capacity; i++) {
+            if (states[i] == FULL) {
+                int index = freeIndex(newStates, hash(keys[i]));
+                if (index == -1) {
+                    return false;
+                }
+                newKeys[index] = keys[i];
+                newValues[index] = values[i];
+                newStates[index] = FULL;
+            }
+        }
+        return true;
+    }
+
+    private static int nextCapacity(int capacity) {
+        if (capacity >= MAX_CAPACITY / 2) {
+            if (capacity == MAX_CAPACITY) throw new IllegalStateException("Превышен максимальный размер таблицы");
+            return MAX_CAPACITY;
+        }
+        return capacity * 2 + 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return findIndex(key) != -1;
+    }
+
+    //Возвращает 0, если ключа нет; отличить отсутствие можно через containsKey или getOrDefault
+    public int get(int key) {
+        int index = findIndex(key);
+        return index == -1 ? 0 : values[index];
+    }
+
+    public int getOrDefault(int key, int defaultValue) {
+        int index = findIndex(key);
+        return index == -1 ? defaultValue : values[index];
+    }
+
+    //Возвращает прежнее значение или 0, если ключа не было
+    public int put(int key, int value) {
+        int index = findIndex(key);
+        if (index != -1) {
+            int oldValue = values[index];
+            values[index] = value;
+            return oldValue;
+        }
+        index = freeIndex(states, hash(key));
+        while (index == -1) {
+            rehash(nextCapacity(capacity));
+            index = freeIndex(states, hash(key));
+        }
+        if (states[index] == DELETED) deleted--;
+        keys[index] = key;
+        values[index] = value;
+        states[index] = FULL;
+        size++;
+        modCount++;
+        if ((loadFactor * capacity) <= size) {
+            rehash(nextCapacity(capacity));
+        } else if ((loadFactor * capacity) <= size + deleted) {
+            rehash(capacity);
+        }
+        return 0;
+    }
+
+    //Возвращает удалённое значение или 0, если ключа не было
+    public int remove(int key) {
+        int index = findIndex(key);
+        if (index == -1) return 0;
+        int removed = values[index];
+        removeAt(index);
+        return removed;
+    }
+
+    private void removeAt(int index) {
+        states[index] = DELETED;
+        deleted++;
+        size--;
+        modCount++;
+    }
+
+    public void clear() {
+        Arrays.fill(states, FREE);
+        size = 0;
+        deleted = 0;
+        modCount++;
+    }
+
+    //Представление в виде Map для совместимости, ключи и значения упаковываются при обращении
+    public Map<Integer, Integer> asMap() {
+        if (map == null) {
+            map = new MapView();
+        }
+        return map;
+    }
+
+    private class MapView extends AbstractMap<Integer, Integer> {
+        private Set<Map.Entry<Integer, Integer>> entrySet;
+
+        public int size() {
+            return size;
+        }
+
+        public boolean containsKey(Object key) {
+            return key instanceof Integer k && IntIntHashTable.this.containsKey(k);
+        }
+
+        public Integer get(Object key) {
+            if (!(key instanceof Integer k)) return null;
+            int index = findIndex(k);
+            return index == -1 ? null : values[index];
+        }
+
+        public Integer put(Integer key, Integer value) {
+            if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+            Integer oldValue = get(key);
+            IntIntHashTable.this.put(key, value);
+            return oldValue;
+        }
+
+        public Integer remove(Object key) {
+            if (!(key instanceof Integer k)) return null;
+            int index = findIndex(k);
+            if (index == -1) return null;
+            Integer removed = values[index];
+            removeAt(index);
+            return removed;
+        }
+
+        public void clear() {
+            IntIntHashTable.this.clear();
+        }
+
+        public Set<Map.Entry<Integer, Integer>> entrySet() {
+            if (entrySet == null) {
+                entrySet = new AbstractSet<>() {
+                    public Iterator<Map.Entry<Integer, Integer>> iterator() {
+                        return new EntryIterator();
+                    }
+
+                    public int size() {
+                        return size;
+                    }
+
+                    public void clear() {
+                        IntIntHashTable.this.clear();
+                    }
+                };
+            }
+            return entrySet;
+        }
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<Integer, Integer>> {
+        int index = -1;
+        int next = advance(0);
+        int expectedModCount = modCount;
+
+        private int advance(int from) {
+            while (from < capacity && states[from] != FULL) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < capacity;
+        }
+
+        @Override
+        public Map.Entry<Integer, Integer> next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (next >= capacity) throw new NoSuchElementException();
+            index = next;
+            next = advance(next + 1);
+            return new Entry(index);
+        }
+
+        @Override
+        public void remove() {
+            if (index == -1 || states[index] != FULL) throw new IllegalStateException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            removeAt(index);
+            expectedModCount = modCount;
+        }
+    }
+
+    private class Entry implements Map.Entry<Integer, Integer> {
+        private int index;
+        private final int key;
+        private int value;  //Последнее увиденное значение
+
+        Entry(int index) {
+            this.index = index;
+            this.key = keys[index];
+            this.value = values[index];
+        }
+
+        //После перестройки таблицы запомненная ячейка устаревает, тогда ключ ищется заново.
+        //-1 - ключ удалён, запись хранит последнее значение, как отсоединённый Item в HashTable
+        private int locate() {
+            if (index == -1 || states[index] != FULL || keys[index] != key) index = findIndex(key);
+            return index;
+        }
+
+        public Integer getKey() {
+            return key;
+        }
+
+        public Integer getValue() {
+            if (locate() != -1) value = values[index];
+            return value;
+        }
+
+        //Удалённый ключ не вставляется заново
+        public Integer setValue(Integer value) {
+            if (value == null) throw new NullPointerException("Значение не может быть null");
+            Integer oldValue = getValue();
+            if (index != -1) values[index] = value;
+            this.value = value;
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e && getKey().equals(e.getKey()) && getValue().equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ getValue().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + " = " + getValue();
+        }
+    }
+}
@@ -0,0 +1,366 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+//Таблица только для чтения поверх файла, сохранённого HashTable.save.
+//Файл отображается в память целиком, элементы не вставляются заново: поиск идёт по сохранённым
+//ячейкам с той же адресацией и тем же зерном (spread, hashFunction1, hashFunction2), страницы подгружаются по мере обращения.
+//Читать можно из нескольких потоков
+public class MappedHashTable<K, V> extends AbstractMap<K, V> implements Closeable {
+    //Формат файла: заголовок, ячейки, записи
+    //Заголовок: magic, версия, ёмкость, коэффициент заполнения, размер, адресация, зерно хеша,
+    //флаг SipHash и два его ключа, длина области записей
+    static final int MAGIC = 0x48544231;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 56;
+    //Ячейка: int хеш ключа, int ссылка на запись (0 - пусто, -1 - удалено, иначе смещение + 1)
+    static final int SLOT_SIZE = 8;
+    private static final int FREE = 0;
+    private static final int DELETED = -1;
+    //Запись: int длина ключа, int длина значения, байты ключа, байты значения
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final long MAX_RECORDS = Integer.MAX_VALUE - 8;
+    private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final int capacity;
+    private final float loadFactor;
+    private final int size;
+    private final HashTable.Addressing addressing;
+    private final int seed;
+    private final boolean hardened;
+    private final long sipKey0;
+    private final long sipKey1;
+    private MappedByteBuffer slots;
+    private MappedByteBuffer records;
+    private volatile boolean closed = false;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    private MappedHashTable(Codec<K> keyCodec, Codec<V> valueCodec, int capacity, float loadFactor, int size,
+                            HashTable.Addressing addressing, int seed, boolean hardened, long sipKey0, long sipKey1,
+                            MappedByteBuffer slots, MappedByteBuffer records) {
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.capacity = capacity;
+        this.loadFactor = loadFactor;
+        this.size = size;
+        this.addressing = addressing;
+        this.seed = seed;
+        this.hardened = hardened;
+        this.sipKey0 = sipKey0;
+        this.sipKey1 = sipKey1;
+        this.slots = slots;
+        this.records = records;
+    }
+
+    public static <K, V> MappedHashTable<K, V> open(Path file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        Objects.requireNonNull(keyCodec);
+        Objects.requireNonNull(valueCodec);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) throw new IOException("Повреждённый файл " + file);
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) throw new IOException("Неизвестный формат файла " + file);
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException("Неподдерживаемая версия " + version);
+            int capacity = header.getInt();
+            float loadFactor = header.getFloat();
+            int size = header.getInt();
+            int addressing = header.getInt();
+            int seed = header.getInt();
+            int hardened = header.getInt();
+            long sipKey0 = header.getLong();
+            long sipKey1 = header.getLong();
+            long recordsLength = header.getLong();
+            long slotsLength = (long) capacity * SLOT_SIZE;
+            if (capacity <= 0 || size < 0 || size > capacity || addressing < 0
+                    || addressing >= HashTable.Addressing.values().length || (hardened & ~1) != 0 || recordsLength < 0
+                    || slotsLength > Integer.MAX_VALUE || recordsLength > MAX_RECORDS
+                    || channel.size() != HEADER_SIZE + slotsLength + recordsLength) {
+                throw new IOException("Повреждённый файл " + file);
+            }
+            MappedByteBuffer slots = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, slotsLength);
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + slotsLength, recordsLength);
+            return new MappedHashTable<>(keyCodec, valueCodec, capacity, loadFactor, size,
+                    HashTable.Addressing.values()[addressing], seed, hardened == 1, sipKey0, sipKey1, slots, records);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("Таблица закрыта");
+    }
+
+    private int slotHash(int index) {
+        return slots.getInt(index * SLOT_SIZE);
+    }
+
+    private int slotRef(int index) {
+        return slots.getInt(index * SLOT_SIZE + 4);
+    }
+
+    private K readKey(int offset) {
+        int keyLength = records.getInt(offset);
+        ByteBuffer in = records.duplicate();
+        in.limit(offset + RECORD_HEADER_SIZE + keyLength).position(offset + RECORD_HEADER_SIZE);
+        return keyCodec.read(in, keyLength);
+    }
+
+    private V readValue(int offset) {
+        int keyLength = records.getInt(offset);
+        int valueLength = records.getInt(offset + 4);
+        int start = offset + RECORD_HEADER_SIZE + keyLength;
+        ByteBuffer in = records.duplicate();
+        in.limit(start + valueLength).position(start);
+        return valueCodec.read(in, valueLength);
+    }
+
+    //Ключ десериализуется только при совпадении хеша
+    private int findIndex(Object key) {
+        checkOpen();
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        int hash = HashTable.spread(key, seed, hardened, sipKey0, sipKey1, addressing);
+        int index = HashTable.hashFunction1(hash, capacity, addressing);
+        int step = HashTable.hashFunction2(hash, capacity, addressing);
+        for (int i = 0; i < capacity; i++) {
+            int ref = slotRef(index);
+            if (ref == FREE) {
+                return -1;
+            }
+            if (ref != DELETED && slotHash(index) == hash && readKey(ref - 1).equals(key)) {
+                return index;
+            }
+            index += step;
+            if (index >= capacity) index -= capacity;
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findIndex(key) != -1;
+    }
+
+    @Override
+    public V get(Object key) {
+        int index = findIndex(key);
+        return index == -1 ? null : readValue(slotRef(index) - 1);
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException("Таблица только для чтения");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Таблица только для чтения");
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    public float loadFactor() {
+        return loadFactor;
+    }
+
+    public HashTable.Addressing addressing() {
+        return addressing;
+    }
+
+    //Отображение снимается сразу, не дожидаясь сборки мусора
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        OffHeapHashTable.free(slots);
+        OffHeapHashTable.free(records);
+        slots = null;
+        records = null;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    checkOpen();
+                    return new EntryIterator();
+                }
+
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        int next = advance(0);
+
+        private int advance(int from) {
+            while (from < capacity && slotRef(from) <= FREE) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < capacity;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            checkOpen();
+            if (next >= capacity) throw new NoSuchElementException();
+            int offset = slotRef(next) - 1;
+            next = advance(next + 1);
+            return new AbstractMap.SimpleImmutableEntry<>(readKey(offset), readValue(offset));
+        }
+    }
+
+    //Сохранение на диск записей каталога: созданных, переименованных и удалённых файлов
+    static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //Windows не открывает каталог как файл, fsync каталога там не поддерживается
+            if (!WINDOWS) throw e;
+        }
+    }
+
+    //Запись файла по ячейкам в порядке индексов. Пишется временный файл, commit переименовывает его,
+    //так что читатель никогда не увидит файл наполовину записанным
+    static class Writer<K, V> implements Closeable {
+        private static final int BUFFER_SIZE = 1 << 16;
+        private final Path file;
+        private final Path tmp;
+        private final Codec<K> keyCodec;
+        private final Codec<V> valueCodec;
+        private final FileChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        private final ByteBuffer slotBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private ByteBuffer recordBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final long recordsStart;
+        private long slotsPosition = HEADER_SIZE;
+        private long recordsWritten = 0;  //Сброшено на диск
+        private boolean committed = false;
+
+        Writer(Path file, Codec<K> keyCodec, Codec<V> valueCodec, int capacity, float loadFactor, int size,
+               HashTable.Addressing addressing, int seed, boolean hardened, long sipKey0, long sipKey1) throws IOException {
+            this.file = file;
+            this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.keyCodec = Objects.requireNonNull(keyCodec);
+            this.valueCodec = Objects.requireNonNull(valueCodec);
+            if ((long) capacity * SLOT_SIZE > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Превышен максимальный размер файла");
+            }
+            recordsStart = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+            header.putInt(MAGIC).putInt(VERSION).putInt(capacity).putFloat(loadFactor).putInt(size).putInt(addressing.ordinal())
+                    .putInt(seed).putInt(hardened ? 1 : 0).putLong(sipKey0).putLong(sipKey1);
+            channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        }
+
+        void free() throws IOException {
+            slot(0, FREE);
+        }
+
+        void deleted() throws IOException {
+            slot(0, DELETED);
+        }
+
+        void entry(int hash, K key, V value) throws IOException {
+            long offset = recordsWritten + recordBuffer.position();
+            while (true) {
+                int start = recordBuffer.position();
+                try {
+                    if (recordBuffer.remaining() < RECORD_HEADER_SIZE) throw new BufferOverflowException();
+                    recordBuffer.position(start + RECORD_HEADER_SIZE);
+                    keyCodec.write(key, recordBuffer);
+                    int keyLength = recordBuffer.position() - start - RECORD_HEADER_SIZE;
+                    valueCodec.write(value, recordBuffer);
+                    recordBuffer.putInt(start, keyLength);
+                    recordBuffer.putInt(start + 4, recordBuffer.position() - start - RECORD_HEADER_SIZE - keyLength);
+                    break;
+                } catch (BufferOverflowException e) {
+                    recordBuffer.position(start);
+                    if (start > 0) {
+                        flushRecords();
+                    } else {
+                        if (recordBuffer.capacity() >= MAX_RECORDS / 2) throw e;
+                        recordBuffer = ByteBuffer.allocate(recordBuffer.capacity() * 2);
+                    }
+                }
+            }
+            if (recordsWritten + recordBuffer.position() > MAX_RECORDS) {
+                throw new IllegalStateException("Превышен максимальный размер файла");
+            }
+            slot(hash, (int) offset + 1);
+        }
+
+        private void slot(int hash, int ref) throws IOException {
+            slotBuffer.putInt(hash).putInt(ref);
+            if (!slotBuffer.hasRemaining()) {
+                flushSlots();
+            }
+        }
+
+        private void flushSlots() throws IOException {
+            slotBuffer.flip();
+            slotsPosition += write(slotBuffer, slotsPosition);
+            slotBuffer.clear();
+        }
+
+        private void flushRecords() throws IOException {
+            recordBuffer.flip();
+            recordsWritten += write(recordBuffer, recordsStart + recordsWritten);
+            recordBuffer.clear();
+        }
+
+        private int write(ByteBuffer buffer, long position) throws IOException {
+            int length = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            return length;
+        }
+
+        void commit() throws IOException {
+            flushSlots();
+            flushRecords();
+            if (slotsPosition != recordsStart) throw new IllegalStateException("Записаны не все ячейки");
+            header.putLong(recordsWritten).flip();
+            write(header, 0);
+            channel.force(true);
+            channel.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            //Без fsync каталога после сбоя может остаться старый файл или не остаться никакого
+            syncDirectory(file.toAbsolutePath().getParent());
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (!committed) Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+//Хеш-таблица вне кучи: ячейки и сериализованные записи лежат в direct ByteBuffer,
+//поэтому сборщик мусора видит только несколько объектов при любом числе элементов.
+//Адресация та же, что у HashTable (hashFunction1/hashFunction2 на hashCode() ключа)
+public class OffHeapHashTable<K, V> extends AbstractMap<K, V> implements Closeable {
+    private static final int CONST = 17;
+    //Ячейка: int хеш ключа, int ссылка на запись (0 - пусто, -1 - удалено, иначе смещение + 1)
+    private static final int SLOT_SIZE = 8;
+    private static final int FREE = 0;
+    private static final int DELETED = -1;
+    //Запись: int длина ключа, int длина значения, байты ключа, байты значения
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - 8) / SLOT_SIZE;
+    private static final int MAX_ARENA = Integer.MAX_VALUE - 8;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final float loadFactor;  //Коэффициент заполнения
+    private int capacity;  //Размерность таблицы
+    private int size = 0;
+    private int deleted = 0;  //Число удалённых ячеек
+    private ByteBuffer slots;
+    private ByteBuffer arena;
+    private int arenaEnd = 0;  //Конец последней записи
+    private long garbage = 0;  //Байты записей, на которые больше нет ссылок
+    private ByteBuffer scratch = ByteBuffer.allocate(256);  //Сериализованный ключ и значение
+    private int modCount = 0;
+    private boolean closed = false;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    public OffHeapHashTable(Codec<K> keyCodec, Codec<V> valueCodec, int capacity, float loadFactor, int arenaBytes) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Неправильный размер " + capacity);
+        }
+        if (loadFactor <= 0 || loadFactor >= 1 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Неправильный коэффициент " + loadFactor);
+        }
+        if (arenaBytes <= 0) {
+            throw new IllegalArgumentException("Неправильный размер области " + arenaBytes);
+        }
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        this.capacity = capacity;
+        this.loadFactor = loadFactor;
+        slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        arena = ByteBuffer.allocateDirect(arenaBytes);
+    }
+
+    public OffHeapHashTable(Codec<K> keyCodec, Codec<V> valueCodec, int capacity) {
+        this(keyCodec, valueCodec, capacity, 0.75f, Math.max(capacity, 16) * 32);
+    }
+
+    public OffHeapHashTable(Codec<K> keyCodec, Codec<V> valueCodec) {
+        this(keyCodec, valueCodec, 16);
+    }
+
+    private static int hashFunction1(int hash, int capacity) {
+        return Math.abs((hash * CONST) % capacity);
+    }
+
+    private static int hashFunction2(int hash, int capacity) {
+        int step = Math.abs(((hash * CONST) + 1) % capacity);
+        return step == 0 ? 1 : step;
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("Таблица закрыта");
+    }
+
+    private static int slotHash(ByteBuffer slots, int index) {
+        return slots.getInt(index * SLOT_SIZE);
+    }
+
+    private static int slotRef(ByteBuffer slots, int index) {
+        return slots.getInt(index * SLOT_SIZE + 4);
+    }
+
+    private static void setSlot(ByteBuffer slots, int index, int hash, int ref) {
+        slots.putInt(index * SLOT_SIZE, hash);
+        slots.putInt(index * SLOT_SIZE + 4, ref);
+    }
+
+    //Сериализация ключа (и значения, если оно не null) в scratch: ключ с 0, значение сразу за ним
+    private int encode(K key, V value) {
+        while (true) {
+            scratch.clear();
+            try {
+                keyCodec.write(key, scratch);
+                int keyLength = scratch.position();
+                if (value != null) valueCodec.write(value, scratch);
+                return keyLength;
+            } catch (BufferOverflowException e) {
+                if (scratch.capacity() >= MAX_ARENA / 2) throw e;
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    private boolean keyEquals(int offset, int keyLength) {
+        if (arena.getInt(offset) != keyLength) return false;
+        ByteBuffer stored = arena.duplicate();
+        stored.limit(offset + HEADER_SIZE + keyLength).position(offset + HEADER_SIZE);
+        ByteBuffer probe = scratch.duplicate();
+        probe.limit(keyLength).position(0);
+        return stored.equals(probe);
+    }
+
+    //Индекс ячейки с ключом, сериализованным в scratch, или -1
+    private int findIndex(int hash, int keyLength) {
+        int index = hashFunction1(hash, capacity);
+        int step = hashFunction2(hash, capacity);
+        for (int i = 0; i < capacity; i++) {
+            int ref = slotRef(slots, index);
+            if (ref == FREE) {
+                return -1;
+            }
+            if (ref != DELETED && slotHash(slots, index) == hash && keyEquals(ref - 1, keyLength)) {
+                return index;
+            }
+            index += step;
+            if (index >= capacity) index -= capacity;
+        }
+        return -1;
+    }
+
+    private static int freeIndex(ByteBuffer slots, int capacity, int hash) {
+        int index = hashFunction1(hash, capacity);
+        int step = hashFunction2(hash, capacity);
+        for (int i = 0; i < capacity; i++) {
+            if (slotRef(slots, index) <= FREE) {
+                return index;
+            }
+            index += step;
+            if (index >= capacity) index -= capacity;
+        }
+        return -1;
+    }
+
+    private K readKey(int offset) {
+        int keyLength = arena.getInt(offset);
+        ByteBuffer in = arena.duplicate();
+        in.limit(offset + HEADER_SIZE + keyLength).position(offset + HEADER_SIZE);
+        return keyCodec.read(in, keyLength);
+    }
+
+    private V readValue(int offset) {
+        int keyLength = arena.getInt(offset);
+        int valueLength = arena.getInt(offset + 4);
+        int start = offset + HEADER_SIZE + keyLength;
+        ByteBuffer in = arena.duplicate();
+        in.limit(start + valueLength).position(start);
+        return valueCodec.read(in, valueLength);
+    }
+
+    private int recordSize(int offset) {
+        return HEADER_SIZE + arena.getInt(offset) + arena.getInt(offset + 4);
+    }
+
+    //Запись из scratch дописывается в конец области, возвращается ссылка для ячейки
+    private int append(int keyLength, int totalLength) {
+        int length = HEADER_SIZE + totalLength;
+        if ((long) arenaEnd + length > arena.capacity()) {
+            reallocateArena(length);
+        }
+        int offset = arenaEnd;
+        arena.putInt(offset, keyLength);
+        arena.putInt(offset + 4, totalLength - keyLength);
+        ByteBuffer source = scratch.duplicate();
+        source.limit(totalLength).position(0);
+        arena.put(offset + HEADER_SIZE, source, 0, totalLength);
+        arenaEnd = offset + length;
+        return offset + 1;
+    }
+
+    //Новая область: переносятся только живые записи, мусор освобождается
+    private void reallocateArena(int extra) {
+        long live = arenaEnd - garbage;
+        long needed = live + extra;
+        if (needed > MAX_ARENA) throw new IllegalStateException("Превышен максимальный размер области");
+        long newSize = Math.min(Math.max(needed * 2, arena.capacity()), MAX_ARENA);
+        ByteBuffer newArena = ByteBuffer.allocateDirect((int) newSize);
+        int end = 0;
+        for (int i = 0; i < capacity; i++) {
+            int ref = slotRef(slots, i);
+            if (ref > FREE) {
+                int offset = ref - 1;
+                int length = recordSize(offset);
+                newArena.put(end, arena, offset, length);
+                setSlot(slots, i, slotHash(slots, i), end + 1);
+                end += length;
+            }
+        }
+        free(arena);
+        arena = newArena;
+        arenaEnd = end;
+        garbage = 0;
+    }
+
+    private void rehash(int newCapacity) {
+        while (true) {
+            ByteBuffer newSlots = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+            if (moveSlots(newSlots, newCapacity)) {
+                free(slots);
+                slots = newSlots;
+                capacity = newCapacity;
+                deleted = 0;
+                return;
+            }
+            free(newSlots);
+            newCapacity = nextCapacity(newCapacity);
+        }
+    }
+
+    private boolean moveSlots(ByteBuffer newSlots, int newCapacity) {
+        for (int i = 0; i < capacity; i++) {
+            int ref = slotRef(slots, i);
+            if (ref > FREE) {
+                int hash = slotHash(slots, i);
+                int index = freeIndex(newSlots, newCapacity, hash);
+                if (index == -1) {
+                    return false;
+                }
+                setSlot(newSlots, index, hash, ref);
+            }
+        }
+        return true;
+    }
+
+    private static int nextCapacity(int capacity) {
+        if (capacity >= MAX_CAPACITY / 2) {
+            if (capacity == MAX_CAPACITY) throw new IllegalStateException("Превышен максимальный размер таблицы");
+            return MAX_CAPACITY;
+        }
+        return capacity * 2 + 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int lookup(Object key) {
+        checkOpen();
+        if (key == null) throw new NullPointerException("Ключ не может быть null");
+        K k;
+        try {
+            k = (K) key;
+            return findIndex(key.hashCode(), encode(k, null));
+        } catch (ClassCastException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return lookup(key) != -1;
+    }
+
+    @Override
+    public V get(Object key) {
+        int index = lookup(key);
+        return index == -1 ? null : readValue(slotRef(slots, index) - 1);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        checkOpen();
+        if (key == null || value == null) throw new NullPointerException("Ключ или значение не могут быть null");
+        int hash = key.hashCode();
+        int keyLength = encode(key, value);
+        int totalLength = scratch.position();
+        int index = findIndex(hash, keyLength);
+        V oldValue = null;
+        if (index != -1) {
+            oldValue = readValue(slotRef(slots, index) - 1);
+            int ref = append(keyLength, totalLength);
+            //append мог перенести записи в новую область, поэтому смещение читается заново
+            garbage += recordSize(slotRef(slots, index) - 1);
+            setSlot(slots, index, hash, ref);
+            return oldValue;
+        }
+        int ref = append(keyLength, totalLength);
+        index = freeIndex(slots, capacity, hash);
+        while (index == -1) {
+            rehash(nextCapacity(capacity));
+            index = freeIndex(slots, capacity, hash);
+        }
+        if (slotRef(slots, index) == DELETED) deleted--;
+        setSlot(slots, index, hash, ref);
+        size++;
+        modCount++;
+        if ((loadFactor * capacity) <= size) {
+            rehash(nextCapacity(capacity));
+        } else if ((loadFactor * capacity) <= size + deleted) {
+            rehash(capacity);
+        }
+        return oldValue;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int index = lookup(key);
+        if (index == -1) return null;
+        V removed = readValue(slotRef(slots, index) - 1);
+        removeAt(index);
+        return removed;
+    }
+
+    private void removeAt(int index) {
+        garbage += recordSize(slotRef(slots, index) - 1);
+        setSlot(slots, index, 0, DELETED);
+        deleted++;
+        size--;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        checkOpen();
+        for (int i = 0; i < capacity; i++) {
+            setSlot(slots, i, 0, FREE);
+        }
+        arenaEnd = 0;
+        garbage = 0;
+        size = 0;
+        deleted = 0;
+        modCount++;
+    }
+
+    //Объём памяти вне кучи, занятый таблицей
+    public long offHeapBytes() {
+        return closed ? 0 : (long) slots.capacity() + arena.capacity();
+    }
+
+    //Память освобождается сразу, не дожидаясь сборки мусора
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        free(slots);
+        free(arena);
+        slots = null;
+        arena = null;
+        size = 0;
+    }
+
+    //Освобождение direct-буфера через Unsafe.invokeCleaner, если он доступен
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method method = null;
+        Object unsafe = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            method = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //Буферы освободит сборщик мусора
+        }
+        INVOKE_CLEANER = method;
+        UNSAFE = unsafe;
+    }
+
+    static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null || buffer == null || !buffer.isDirect()) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            //Буфер освободит сборщик мусора
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    checkOpen();
+                    return new EntryIterator();
+                }
+
+                public int size() {
+                    return size;
+                }
+
+                public void clear() {
+                    OffHeapHashTable.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    //Ключи и значения десериализуются при обходе
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        int index = -1;
+        int next = advance(0);
+        int expectedModCount = modCount;
+
+        private int advance(int from) {
+            while (from < capacity && slotRef(slots, from) <= FREE) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < capacity;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            checkOpen();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (next >= capacity) throw new NoSuchElementException();
+            index = next;
+            next = advance(next + 1);
+            int offset = slotRef(slots, index) - 1;
+            K key = readKey(offset);
+            return new AbstractMap.SimpleEntry<>(key, readValue(offset)) {
+                @Override
+                public V setValue(V value) {
+                    V oldValue = super.setValue(value);
+                    put(getKey(), value);
+                    expectedModCount = modCount;
+                    return oldValue;
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (index == -1 || slotRef(slots, index) <= FREE) throw new IllegalStateException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            removeAt(index);
+            expectedModCount = modCount;
+        }
+    }
+}
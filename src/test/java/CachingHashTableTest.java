@@ -0,0 +1,107 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class CachingHashTableTest extends TestCase {
+    long now = 0;
+
+    private void checkBounded(CachingHashTable.Policy policy) {
+        List<CachingHashTable.RemovalCause> removed = new ArrayList<>();
+        CachingHashTable<Integer, String> cache = new CachingHashTable<Integer, String>(100, policy)
+                .removalListener((k, v, cause) -> removed.add(cause));
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(i, "v" + i);
+            assertTrue(cache.size() <= 100);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(Collections.nCopies(900, CachingHashTable.RemovalCause.SIZE), removed);
+        cache.remove(cache.keySet().iterator().next());
+        assertEquals(99, cache.size());
+        assertEquals(CachingHashTable.RemovalCause.EXPLICIT, removed.get(900));
+    }
+
+    public void testBoundedSize() {
+        for (CachingHashTable.Policy policy : CachingHashTable.Policy.values()) {
+            checkBounded(policy);
+        }
+    }
+
+    public void testHotKeysSurvive() {
+        for (CachingHashTable.Policy policy : CachingHashTable.Policy.values()) {
+            CachingHashTable<Integer, Integer> cache = new CachingHashTable<>(200, policy);
+            int hits = 0;
+            for (int i = 0; i < 20_000; i++) {
+                int hot = i % 20;
+                if (cache.get(hot) != null) hits++;
+                else cache.put(hot, hot);
+                cache.put(1_000 + i, i);
+            }
+            assertTrue(policy + " " + hits, hits > 19_000);
+        }
+    }
+
+    public void testWeigher() {
+        CachingHashTable<String, String> cache = new CachingHashTable<>(10, (k, v) -> v.length(), CachingHashTable.Policy.LRU);
+        cache.put("a", "12345");
+        cache.put("b", "1234");
+        assertEquals(9, cache.weight());
+        cache.put("b", "123456");
+        assertTrue(cache.weight() <= 10);
+        assertEquals(1, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new CachingHashTable<String, String>(0));
+    }
+
+    public void testExpiry() {
+        List<CachingHashTable.RemovalCause> causes = new ArrayList<>();
+        CachingHashTable<String, Integer> cache = new CachingHashTable<String, Integer>(100)
+                .expireAfterWrite(10, TimeUnit.NANOSECONDS)
+                .ticker(() -> now)
+                .removalListener((k, v, cause) -> causes.add(cause));
+        cache.put("a", 1);
+        cache.put("b", 2, 100, TimeUnit.NANOSECONDS);
+        now = 5;
+        assertEquals(1, (int) cache.get("a"));
+        cache.put("a", 3);
+        now = 12;
+        assertEquals(3, (int) cache.get("a"));
+        now = 16;
+        assertNull(cache.get("a"));
+        assertEquals(2, (int) cache.get("b"));
+        now = 100;
+        cache.cleanUp();
+        assertTrue(cache.isEmpty());
+        assertEquals(List.of(CachingHashTable.RemovalCause.REPLACED, CachingHashTable.RemovalCause.EXPIRED,
+                CachingHashTable.RemovalCause.EXPIRED), causes);
+    }
+
+    public void testExpireAfterAccess() {
+        CachingHashTable<String, Integer> cache = new CachingHashTable<String, Integer>(100, CachingHashTable.Policy.CLOCK)
+                .expireAfterAccess(10, TimeUnit.NANOSECONDS)
+                .ticker(() -> now);
+        cache.put("a", 1);
+        for (now = 5; now < 50; now += 5) {
+            assertTrue(cache.containsKey("a"));
+        }
+        now += 10;
+        assertFalse(cache.containsKey("a"));
+        assertEquals(0, cache.size());
+    }
+
+    public void testSnapshot() {
+        CachingHashTable<Integer, String> cache = new CachingHashTable<>(100, CachingHashTable.Policy.LRU);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "v" + i);
+        }
+        HashTable<Integer, String> snapshot = cache.snapshot();
+        for (int i = 100; i < 200; i++) {
+            cache.put(i, "v" + i);
+        }
+        cache.replace(150, "new");
+        assertEquals(100, snapshot.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v" + i, snapshot.get(i));
+        }
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.put(1, "x"));
+    }
+}
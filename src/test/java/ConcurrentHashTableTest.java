@@ -0,0 +1,77 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentHashTableTest extends TestCase {
+    ConcurrentHashTable<String, Integer> table = new ConcurrentHashTable<>();
+
+    public void testMapOperations() {
+        assertNull(table.put("a", 1));
+        assertEquals(1, (int) table.putIfAbsent("a", 2));
+        assertEquals(1, (int) table.get("a"));
+        assertTrue(table.replace("a", 1, 3));
+        assertFalse(table.replace("a", 1, 4));
+        assertEquals(3, (int) table.replace("a", 5));
+        assertFalse(table.remove("a", 3));
+        assertTrue(table.remove("a", 5));
+        assertTrue(table.isEmpty());
+        assertEquals(7, (int) table.computeIfAbsent("b", k -> 7));
+        assertEquals(8, (int) table.computeIfPresent("b", (k, v) -> v + 1));
+        assertNull(table.compute("b", (k, v) -> null));
+        assertFalse(table.containsKey("b"));
+        assertEquals(1, (int) table.merge("c", 1, Integer::sum));
+        assertEquals(2, (int) table.merge("c", 1, Integer::sum));
+        assertThrows(NullPointerException.class, () -> table.put(null, 1));
+        assertThrows(NullPointerException.class, () -> table.put("d", null));
+    }
+
+    public void testGrowAndViews() {
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            table.put("k" + i, i);
+            expected.put("k" + i, i);
+        }
+        for (int i = 0; i < 20_000; i += 4) {
+            table.remove("k" + i);
+            expected.remove("k" + i);
+        }
+        assertEquals(expected, table);
+        assertEquals(expected.keySet(), table.keySet());
+        assertTrue(table.containsValue(19_999));
+        table.keySet().removeIf(k -> k.endsWith("1"));
+        expected.keySet().removeIf(k -> k.endsWith("1"));
+        assertEquals(expected, table);
+        table.clear();
+        assertEquals(0, table.size());
+    }
+
+    public void testConcurrentMerge() throws Exception {
+        int threads = 8;
+        int increments = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger created = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < increments; i++) {
+                    table.merge("key" + (i % 1000), 1, Integer::sum);
+                    table.computeIfAbsent("once" + (i % 500), k -> created.incrementAndGet());
+                    assertNotNull(table.get("key" + (i % 1000)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        int total = 0;
+        for (int i = 0; i < 1000; i++) {
+            total += table.get("key" + i);
+        }
+        assertEquals(threads * increments, total);
+        assertEquals(500, created.get());
+        assertEquals(1500, table.size());
+    }
+}
@@ -0,0 +1,157 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class DurableHashTableTest extends TestCase {
+    Path dir;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("durable");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    private DurableHashTable<String, Long> open() throws IOException {
+        return new DurableHashTable<>(dir, Codec.STRING, Codec.LONG);
+    }
+
+    public void testReplayAfterReopen() throws IOException {
+        Map<String, Long> expected = new HashMap<>();
+        try (DurableHashTable<String, Long> table = open()) {
+            for (long i = 0; i < 1_000; i++) {
+                table.put("key" + i, i);
+                expected.put("key" + i, i);
+            }
+            table.remove("key1");
+            expected.remove("key1");
+            table.merge("key2", 10L, Long::sum);
+            expected.merge("key2", 10L, Long::sum);
+            table.merge("key3", 0L, (a, b) -> null);
+            expected.remove("key3");
+            table.computeIfAbsent("new", k -> 7L);
+            expected.put("new", 7L);
+            table.replaceAll((k, v) -> v + 1);
+            expected.replaceAll((k, v) -> v + 1);
+            assertEquals(expected, table);
+            assertThrows(UnsupportedOperationException.class, () -> table.entrySet().clear());
+        }
+        try (DurableHashTable<String, Long> table = open()) {
+            assertEquals(expected, table);
+            table.clear();
+            table.put("a", 1L);
+        }
+        try (DurableHashTable<String, Long> table = open()) {
+            assertEquals(Map.of("a", 1L), table);
+        }
+    }
+
+    public void testTornTailIsDropped() throws IOException {
+        try (DurableHashTable<String, Long> table = open()) {
+            table.put("a", 1L);
+            table.put("b", 2L);
+        }
+        Path log;
+        try (var files = Files.list(dir)) {
+            log = files.filter(f -> f.toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+        try (DurableHashTable<String, Long> table = open()) {
+            assertEquals(Map.of("a", 1L), table);
+            table.put("c", 3L);
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 5, 1, 2, 3, 4, 9, 9, 9, 9, 9}));
+        }
+        try (DurableHashTable<String, Long> table = open()) {
+            assertEquals(Map.of("a", 1L, "c", 3L), table);
+        }
+    }
+
+    public void testCheckpointCompactsLog() throws IOException {
+        try (DurableHashTable<String, Long> table = new DurableHashTable<>(dir, Codec.STRING, Codec.LONG, 0, 4_096)) {
+            for (long i = 0; i < 2_000; i++) {
+                table.put("key" + (i % 100), i);
+            }
+            table.checkpoint();
+            table.put("after", 1L);
+        }
+        try (var files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+        try (DurableHashTable<String, Long> table = open()) {
+            assertEquals(101, table.size());
+            assertEquals(1999L, (long) table.get("key99"));
+            assertEquals(1L, (long) table.get("after"));
+        }
+    }
+
+    public void testGroupCommitFromManyThreads() throws Exception {
+        try (DurableHashTable<String, Long> table = new DurableHashTable<>(dir, Codec.STRING, Codec.LONG, 5, 1 << 20)) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (long i = 0; i < 500; i++) {
+                        table.put(thread + ":" + i, i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+            executor.shutdown();
+        }
+        try (DurableHashTable<String, Long> table = open()) {
+            assertEquals(2_000, table.size());
+            assertEquals(499L, (long) table.get("3:499"));
+        }
+    }
+
+    //Кодек, который не умеет записывать отрицательные значения
+    private static final Codec<Long> NON_NEGATIVE = new Codec<>() {
+        public void write(Long value, ByteBuffer out) {
+            if (value < 0) throw new IllegalArgumentException("Неподдерживаемое значение " + value);
+            Codec.LONG.write(value, out);
+        }
+
+        public Long read(ByteBuffer in, int length) {
+            return Codec.LONG.read(in, length);
+        }
+    };
+
+    public void testEncodingFailureLeavesTableUnchanged() throws IOException {
+        Map<String, Long> expected = Map.of("a", 1L, "b", 2L);
+        try (DurableHashTable<String, Long> table = new DurableHashTable<>(dir, Codec.STRING, NON_NEGATIVE)) {
+            table.putAll(expected);
+            assertThrows(IllegalArgumentException.class, () -> table.put("a", -1L));
+            assertThrows(IllegalArgumentException.class, () -> table.put("c", -1L));
+            assertThrows(IllegalArgumentException.class, () -> table.putAll(Map.of("d", 4L, "e", -5L)));
+            assertThrows(IllegalArgumentException.class, () -> table.replace("a", -1L));
+            assertThrows(IllegalArgumentException.class, () -> table.merge("b", -10L, Long::sum));
+            assertThrows(IllegalArgumentException.class, () -> table.compute("a", (k, v) -> -v));
+            assertThrows(IllegalArgumentException.class, () -> table.computeIfAbsent("f", k -> -1L));
+            assertThrows(IllegalArgumentException.class, () -> table.replaceAll((k, v) -> v == 2L ? -v : v + 10));
+            assertEquals(expected, table);
+            table.put("c", 3L);
+        }
+        try (DurableHashTable<String, Long> table = new DurableHashTable<>(dir, Codec.STRING, NON_NEGATIVE)) {
+            assertEquals(Map.of("a", 1L, "b", 2L, "c", 3L), table);
+        }
+    }
+}
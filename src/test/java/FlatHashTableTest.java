@@ -0,0 +1,72 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class FlatHashTableTest extends TestCase {
+    FlatHashTable<String, Integer> table = new FlatHashTable<>();
+
+    public void testPutGetRemove() {
+        assertNull(table.put("a", 1));
+        assertEquals(1, (int) table.put("a", 2));
+        assertEquals(2, (int) table.get("a"));
+        assertNull(table.get("b"));
+        assertEquals(5, (int) table.getOrDefault("b", 5));
+        assertEquals(2, (int) table.remove("a"));
+        assertNull(table.remove("a"));
+        assertTrue(table.isEmpty());
+        assertThrows(NullPointerException.class, () -> table.put(null, 1));
+        assertThrows(NullPointerException.class, () -> table.put("c", null));
+        assertThrows(NullPointerException.class, () -> table.get(null));
+    }
+
+    public void testGrowAndChurn() {
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            table.put("key" + i, i);
+            expected.put("key" + i, i);
+            if (i % 3 == 0) {
+                table.remove("key" + (i / 2));
+                expected.remove("key" + (i / 2));
+            }
+        }
+        assertEquals(expected, table);
+        assertEquals(table, expected);
+        assertEquals(expected.hashCode(), table.hashCode());
+    }
+
+    public void testViews() {
+        for (int i = 0; i < 10; i++) {
+            table.put(String.valueOf(i), i);
+        }
+        assertEquals(Set.of("0", "1", "2", "3", "4", "5", "6", "7", "8", "9"), table.keySet());
+        List<Integer> values = new ArrayList<>(table.values());
+        Collections.sort(values);
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), values);
+        for (Map.Entry<String, Integer> entry : table.entrySet()) {
+            entry.setValue(entry.getValue() * 10);
+        }
+        assertEquals(90, (int) table.get("9"));
+        table.keySet().removeIf(k -> Integer.parseInt(k) % 2 == 0);
+        assertEquals(5, table.size());
+        assertThrows(ConcurrentModificationException.class, () -> table.forEach((k, v) -> table.put(k + "x", v)));
+    }
+
+    public void testEntryAfterRemove() {
+        table.put("a", 1);
+        Map.Entry<String, Integer> entry = table.entrySet().iterator().next();
+        for (int i = 0; i < 100; i++) {
+            table.put("key" + i, i);
+        }
+        assertEquals(1, (int) entry.setValue(2));
+        assertEquals(2, (int) table.get("a"));
+        table.remove("a");
+        assertEquals(2, (int) entry.getValue());
+        assertEquals(new AbstractMap.SimpleEntry<>("a", 2), entry);
+        assertEquals("a".hashCode() ^ 2, entry.hashCode());
+        //Удалённый ключ запись не возвращает в таблицу
+        assertEquals(2, (int) entry.setValue(3));
+        assertEquals(3, (int) entry.getValue());
+        assertFalse(table.containsKey("a"));
+        assertEquals(100, table.size());
+    }
+}
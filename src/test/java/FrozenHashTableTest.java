@@ -0,0 +1,72 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class FrozenHashTableTest extends TestCase {
+    public void testFreeze() {
+        HashTable<String, Integer> table = new HashTable<>();
+        for (int i = 0; i < 100_000; i++) table.put("key" + i, i);
+        FrozenHashTable<String, Integer> frozen = table.freeze();
+        assertEquals(100_000, frozen.size());
+        assertTrue(frozen.capacity() < 100_000 * 1.2);
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i, (int) frozen.get("key" + i));
+        }
+        for (int i = 100_000; i < 110_000; i++) {
+            assertNull(frozen.get("key" + i));
+            assertFalse(frozen.containsKey("key" + i));
+        }
+        assertEquals(table, frozen);
+        assertEquals(frozen, table);
+        assertEquals(table.hashCode(), frozen.hashCode());
+        assertTrue(frozen.containsValue(99_999));
+        assertFalse(frozen.containsValue(-1));
+    }
+
+    public void testEqualHashCodes() {
+        //"Aa" и "BB" имеют одинаковый hashCode(), как и все их сочетания одной длины
+        Map<String, Integer> source = new HashMap<>();
+        String[] parts = {"Aa", "BB"};
+        for (int i = 0; i < 63; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int bit = 0; bit < 6; bit++) key.append(parts[(i >> bit) & 1]);
+            source.put(key.toString(), i);
+        }
+        source.put("other", -1);
+        FrozenHashTable<String, Integer> frozen = FrozenHashTable.copyOf(source);
+        assertEquals(source, frozen);
+        for (Map.Entry<String, Integer> entry : source.entrySet()) {
+            assertEquals(entry.getValue(), frozen.get(entry.getKey()));
+        }
+        assertNull(frozen.get("BBBBBBBBBBBB"));
+        Set<String> keys = new HashSet<>(frozen.keySet());
+        assertEquals(source.keySet(), keys);
+    }
+
+    public void testImmutable() {
+        FrozenHashTable<Integer, Integer> frozen = FrozenHashTable.copyOf(Map.of(1, 1, 2, 2));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.put(3, 3));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.remove(1));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.remove(5));
+        assertThrows(UnsupportedOperationException.class, frozen::clear);
+        assertThrows(UnsupportedOperationException.class, () -> frozen.putIfAbsent(1, 5));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.merge(1, 1, Integer::sum));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.entrySet().iterator().next().setValue(5));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.keySet().remove(1));
+        assertThrows(NullPointerException.class, () -> frozen.get(null));
+        assertSame(frozen, FrozenHashTable.copyOf(frozen));
+    }
+
+    public void testEmptyAndSmall() {
+        FrozenHashTable<Integer, Integer> empty = FrozenHashTable.copyOf(Map.of());
+        assertTrue(empty.isEmpty());
+        assertNull(empty.get(1));
+        assertFalse(empty.entrySet().iterator().hasNext());
+        FrozenHashTable<Integer, Integer> one = FrozenHashTable.copyOf(Map.of(0, 7));
+        assertEquals(7, (int) one.get(0));
+        assertNull(one.get(1));
+        Iterator<Map.Entry<Integer, Integer>> iterator = one.entrySet().iterator();
+        iterator.next();
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+}
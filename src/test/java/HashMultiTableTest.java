@@ -0,0 +1,144 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class HashMultiTableTest extends TestCase {
+    public void testPutAndGetAll() {
+        HashMultiTable<String, Integer> index = new HashMultiTable<>();
+        index.putValue("a", 1);
+        index.putValue("a", 2);
+        index.putValue("a", 1);
+        index.putValue("b", 3);
+        assertEquals(List.of(1, 2, 1), new ArrayList<>(index.getAll("a")));
+        assertEquals(List.of(3), new ArrayList<>(index.getAll("b")));
+        assertTrue(index.getAll("c").isEmpty());
+        assertEquals(4, index.size());
+        assertEquals(2, index.keyCount());
+        assertTrue(index.containsEntry("a", 2));
+        assertFalse(index.containsEntry("b", 2));
+        //Представление видит последующие вставки и само вставляет в таблицу
+        Collection<Integer> c = index.getAll("c");
+        index.putValue("c", 5);
+        c.add(6);
+        assertEquals(List.of(5, 6), new ArrayList<>(c));
+        assertEquals(6, index.size());
+        assertThrows(NullPointerException.class, () -> index.putValue(null, 1));
+        assertThrows(NullPointerException.class, () -> index.putValue("a", null));
+    }
+
+    public void testManyValues() {
+        HashMultiTable<Integer, Integer> index = new HashMultiTable<>();
+        for (int i = 0; i < 100_000; i++) {
+            index.putValue(i % 1_000, i);
+        }
+        assertEquals(100_000, index.size());
+        assertEquals(1_000, index.keyCount());
+        for (int key = 0; key < 1_000; key++) {
+            int expected = key;
+            for (int value : index.getAll(key)) {
+                assertEquals(expected, value);
+                expected += 1_000;
+            }
+            assertEquals(100_000 + key, expected);
+        }
+    }
+
+    public void testRemoveValue() {
+        HashMultiTable<String, Integer> index = new HashMultiTable<>();
+        index.putValue("a", 1);
+        index.putValue("a", 2);
+        index.putValue("a", 3);
+        assertFalse(index.removeValue("a", 4));
+        assertFalse(index.removeValue("b", 1));
+        assertTrue(index.removeValue("a", 2));
+        assertEquals(List.of(1, 3), new ArrayList<>(index.getAll("a")));
+        assertTrue(index.removeValue("a", 1));
+        assertTrue(index.removeValue("a", 3));
+        assertFalse(index.containsKey("a"));
+        assertEquals(0, index.size());
+        index.putValue("b", 1);
+        index.putValue("b", 2);
+        assertEquals(List.of(1, 2), index.removeAll("b"));
+        assertEquals(List.of(), index.removeAll("b"));
+        assertTrue(index.isEmpty());
+        assertEquals(0, index.keyCount());
+    }
+
+    public void testIteratorRemove() {
+        HashMultiTable<String, Integer> index = new HashMultiTable<>();
+        for (int i = 0; i < 5; i++) {
+            index.putValue("a", i % 2);
+        }
+        //Удаляются выданные элементы, даже если раньше есть равные им
+        Iterator<Integer> it = index.getAll("a").iterator();
+        int position = 0;
+        while (it.hasNext()) {
+            it.next();
+            if (position++ >= 2) it.remove();
+        }
+        assertEquals(List.of(0, 1), new ArrayList<>(index.getAll("a")));
+        assertEquals(2, index.size());
+        it = index.getAll("a").iterator();
+        while (it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        assertFalse(index.containsKey("a"));
+        assertEquals(0, index.size());
+        index.putValue("b", 1);
+        index.putValue("b", 2);
+        Iterator<Integer> failing = index.getAll("b").iterator();
+        failing.next();
+        index.putValue("b", 3);
+        assertThrows(ConcurrentModificationException.class, failing::next);
+    }
+
+    public void testChunkNotSharedAfterChange() {
+        HashMultiTable<String, Integer> index = new HashMultiTable<>();
+        for (int i = 0; i < 6; i++) {
+            index.putValue("a", i);
+        }
+        Collection<Integer> before = new ArrayList<>(index.getAll("a"));
+        assertTrue(index.removeValue("a", 2));
+        index.putValue("a", 6);
+        index.putValue("a", 7);
+        assertTrue(index.removeValue("a", 0));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), before);
+        assertEquals(List.of(1, 3, 4, 5, 6, 7), new ArrayList<>(index.getAll("a")));
+        Iterator<Integer> it = index.getAll("a").iterator();
+        while (it.hasNext()) {
+            if (it.next() % 2 == 1) it.remove();
+        }
+        assertEquals(List.of(4, 6), new ArrayList<>(index.getAll("a")));
+        assertTrue(index.removeValue("a", 6));
+        assertEquals(List.of(4), new ArrayList<>(index.getAll("a")));
+        assertEquals(1, index.size());
+    }
+
+    public void testValueCountStats() {
+        HashMultiTable<Integer, Integer> index = new HashMultiTable<>();
+        for (int key = 0; key < 100; key++) {
+            for (int v = 0; v <= key % 3; v++) {
+                index.putValue(key, v);
+            }
+        }
+        assertArrayEquals(new int[]{34, 33, 33}, index.valueCountHistogram());
+        assertEquals(3, index.valueCount(2));
+        assertEquals(0, index.valueCount(1_000));
+        assertEquals(199.0 / 100, index.averageValueCount(), 1e-9);
+        assertEquals(0, new HashMultiTable<>().valueCountHistogram().length);
+    }
+
+    public void testForEach() {
+        HashMultiTable<String, Integer> index = new HashMultiTable<>();
+        index.putValue("a", 1);
+        index.putValue("a", 2);
+        index.putValue("b", 3);
+        Map<String, List<Integer>> seen = new TreeMap<>();
+        index.forEach((k, v) -> seen.computeIfAbsent(k, x -> new ArrayList<>()).add(v));
+        assertEquals(Map.of("a", List.of(1, 2), "b", List.of(3)), seen);
+        assertEquals(Set.of("a", "b"), index.keySet());
+        assertThrows(UnsupportedOperationException.class, () -> index.keySet().remove("a"));
+        assertThrows(ConcurrentModificationException.class, () -> index.forEach((k, v) -> index.putValue("c", v)));
+    }
+}
@@ -0,0 +1,128 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class HashTableStatsTest extends TestCase {
+    HashTable<Integer, Integer> table = new HashTable<>();
+
+    public void testDisabledByDefault() {
+        table.put(1, 1);
+        assertNull(table.recorder());
+        assertThrows(IllegalStateException.class, () -> table.stats());
+    }
+
+    public void testCounters() {
+        table.enableStats();
+        for (int i = 0; i < 1_000; i++) {
+            table.put(i, i);
+        }
+        table.put(0, 1);
+        for (int i = 0; i < 1_500; i++) {
+            table.get(i);
+        }
+        table.remove(1);
+        table.remove(-1);
+        HashTableStats stats = table.stats();
+        assertEquals(1, stats.putHits());
+        assertEquals(1_000, stats.putMisses());
+        assertEquals(1_000, stats.getHits());
+        assertEquals(500, stats.getMisses());
+        assertEquals(1, stats.removeHits());
+        assertEquals(1, stats.removeMisses());
+        assertTrue(stats.resizeCount() > 0);
+        assertEquals(1_000 + 1 + 1_500 + 2, Arrays.stream(stats.lookupProbeHistogram()).sum());
+        assertEquals(999, Arrays.stream(stats.storedProbeHistogram()).sum());
+        assertEquals(999, stats.size());
+        assertTrue(stats.averageProbeLength() >= 1);
+        assertTrue(stats.clusteringScore() > 0);
+        assertEquals(0.0, stats.hashCollisionRate());
+        assertEquals(stats.load(), 999.0 / stats.capacity() + (double) stats.deletedSlots() / stats.capacity(), 1e-9);
+        table.disableStats();
+        table.get(1);
+        assertThrows(IllegalStateException.class, () -> table.stats());
+    }
+
+    public void testCollisionRate() {
+        record Key(int id) {
+            @Override
+            public int hashCode() {
+                return id / 2;
+            }
+        }
+        HashTable<Key, Integer> colliding = new HashTable<>();
+        colliding.enableStats();
+        for (int i = 0; i < 100; i++) {
+            colliding.put(new Key(i), i);
+        }
+        assertEquals(0.5, colliding.stats().hashCollisionRate(), 1e-9);
+    }
+
+    public void testMXBean() throws Exception {
+        ObjectName name = HashTableMonitor.register(table, "test");
+        try {
+            table.put(1, 1);
+            table.get(1);
+            table.get(2);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1, server.getAttribute(name, "Size"));
+            assertEquals(1L, server.getAttribute(name, "GetHits"));
+            assertEquals(1L, server.getAttribute(name, "GetMisses"));
+            assertEquals(Double.NaN, server.getAttribute(name, "ClusteringScore"));
+            table.stats();
+            assertEquals(1.0, server.getAttribute(name, "AverageProbeLength"));
+        } finally {
+            HashTableMonitor.unregister(name);
+        }
+    }
+
+    public void testResizeEvent() throws Exception {
+        Path file = Files.createTempFile("resize", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("HashTable.Resize").withThreshold(Duration.ZERO);
+            recording.start();
+            for (int i = 0; i < 1_000; i++) {
+                table.put(i, i);
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        assertFalse(events.isEmpty());
+        RecordedEvent event = events.get(events.size() - 1);
+        assertTrue(event.getInt("newCapacity") > event.getInt("oldCapacity"));
+        assertFalse(event.getBoolean("compaction"));
+    }
+
+    public void testIncrementalResizeTimed() throws Exception {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, HashTable.ResizeMode.INCREMENTAL);
+        table.enableStats();
+        Path file = Files.createTempFile("resize", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("HashTable.Resize").withThreshold(Duration.ZERO);
+            recording.start();
+            for (int i = 0; i < 1_000; i++) {
+                table.put(i, i);
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        HashTableStats stats = table.stats();
+        assertTrue(stats.resizeCount() > 0);
+        assertTrue(stats.resizeNanos() > 0);
+        assertEquals(stats.resizeCount(), events.size());
+        RecordedEvent event = events.get(events.size() - 1);
+        assertTrue(event.getInt("newCapacity") > event.getInt("oldCapacity"));
+    }
+}
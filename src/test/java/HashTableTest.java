@@ -1,5 +1,6 @@
 import junit.framework.TestCase;
 import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigInteger;
 import java.util.*;
 import java.util.function.Function;
 
@@ -80,6 +81,155 @@ public class HashTableTest extends TestCase {
         assertThrows(NullPointerException.class, () -> ht.remove(null));
     }
 
+    public void testGetAfterRemoveInProbeChain() {
+        HashTable<Integer, Integer> table = new HashTable<>();
+        for (int i = 0; i < 1000; i++) {
+            table.put(i, i * 2);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            table.remove(i);
+        }
+        assertEquals(500, table.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 1, table.containsKey(i));
+            assertEquals(i % 2 == 1 ? (Integer) (i * 2) : null, table.get(i));
+        }
+        assertNull(table.put(0, 7));
+        assertEquals(7, (int) table.get(0));
+        assertEquals(501, table.size());
+    }
+
+    public void testRemoveChurnKeepsCapacity() {
+        HashTable<Integer, Integer> table = new HashTable<>();
+        for (int i = 0; i < 100; i++) {
+            table.put(i, i);
+        }
+        int capacity = table.capacity();
+        for (int i = 100; i < 100_000; i++) {
+            table.put(i, i);
+            assertEquals(i - 100, (int) table.remove(i - 100));
+            assertEquals(100, table.size());
+        }
+        assertEquals(capacity, table.capacity());
+        assertTrue(table.deletedCount() <= capacity * 0.75);
+        for (int i = 99_900; i < 100_000; i++) {
+            assertEquals(i, (int) table.get(i));
+        }
+        assertNull(table.get(99_899));
+        assertEquals(100, new ArrayList<>(table.keySet()).size());
+    }
+
+    public void testEnsureCapacity() {
+        HashTable<Integer, Integer> table = new HashTable<>();
+        table.put(1, 1);
+        table.ensureCapacity(10_000);
+        int capacity = table.capacity();
+        assertTrue(capacity * 0.75 > 10_000);
+        for (int i = 0; i < 10_000; i++) {
+            table.put(i, i);
+        }
+        assertEquals(capacity, table.capacity());
+        assertEquals(9_999, (int) table.get(9_999));
+        assertThrows(IllegalArgumentException.class, () -> table.ensureCapacity(-1));
+    }
+
+    public void testCopyConstructor() {
+        Map<String, Integer> map = new HashMap<>();
+        fillTable(map);
+        HashTable<String, Integer> copy = new HashTable<>(map);
+        assertEquals(map, copy);
+        assertEquals(copy.capacity(), new HashTable<>(copy).capacity());
+        assertThrows(NullPointerException.class, () -> new HashTable<String, Integer>(null));
+    }
+
+    public void testIncrementalResize() {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, HashTable.ResizeMode.INCREMENTAL);
+        boolean migrated = false;
+        for (int i = 0; i < 10_000; i++) {
+            assertNull(table.put(i, i));
+            if (table.isMigrating()) {
+                migrated = true;
+                for (int j = 0; j <= i; j += 7) {
+                    assertEquals(j, (int) table.get(j));
+                }
+                assertEquals(i, (int) table.remove(i));
+                assertNull(table.get(i));
+                assertNull(table.put(i, i));
+            }
+        }
+        assertTrue(migrated);
+        assertEquals(10_000, table.size());
+        assertEquals(10_000, new HashSet<>(table.keySet()).size());
+        assertFalse(table.isMigrating());
+        assertEquals(0, (int) table.put(0, 10_000));
+    }
+
+    public void testIncrementalResizeReadsInsideCompute() {
+        for (int seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            HashTable<Integer, Integer> table = new HashTable<>(4, 0.75f, HashTable.ResizeMode.INCREMENTAL);
+            Map<Integer, Integer> expected = new HashMap<>();
+            for (int i = 0; i < 300; i++) {
+                int key = random.nextInt(100_000);
+                expected.putIfAbsent(key, key);
+                assertEquals(key, (int) table.computeIfAbsent(key, k -> {
+                    for (int j = 0; j < 20; j++) {
+                        table.get(random.nextInt(100_000));
+                    }
+                    return k;
+                }));
+            }
+            for (Integer key : new ArrayList<>(expected.keySet())) {
+                if (key % 2 == 0) {
+                    expected.remove(key);
+                    assertNull(table.merge(key, 0, (a, b) -> {
+                        table.get(random.nextInt(100_000));
+                        return null;
+                    }));
+                } else {
+                    assertEquals(key, table.compute(key, (k, v) -> {
+                        table.get(random.nextInt(100_000));
+                        return v;
+                    }));
+                }
+            }
+            assertEquals(expected, table);
+            assertEquals(expected.size(), new HashSet<>(table.keySet()).size());
+        }
+    }
+
+    public void testModuloCapacityIsPrime() {
+        assertEquals(17, new HashTable<>().capacity());
+        assertEquals(101, new HashTable<>(100, 0.75f, HashTable.ResizeMode.INCREMENTAL).capacity());
+        HashTable<Integer, Integer> table = new HashTable<>(16);
+        for (int i = 0; i < 1000; i++) table.put(i, i);
+        table.setRetainCapacityOnClear(true);
+        table.clear();
+        assertTrue(BigInteger.valueOf(table.capacity()).isProbablePrime(20));
+        table.setRetainCapacityOnClear(false);
+        table.clear();
+        assertEquals(17, table.capacity());
+    }
+
+    public void testPowerOfTwoAddressing() {
+        HashTable<Integer, Integer> table = new HashTable<>(10, 0.75f, HashTable.Addressing.POWER_OF_TWO);
+        assertEquals(16, table.capacity());
+        for (int i = 0; i < 10_000; i++) {
+            table.put(i * 1024, i);
+        }
+        assertEquals(0, Integer.bitCount(table.capacity()) - 1);
+        for (int i = 0; i < 10_000; i += 3) {
+            assertEquals(i, (int) table.remove(i * 1024));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i % 3 == 0 ? null : (Integer) i, table.get(i * 1024));
+        }
+        HashTable<Long, String> single = new HashTable<>(1, 0.75f, HashTable.Addressing.POWER_OF_TWO);
+        single.put(1L, "1");
+        single.put(2L, "2");
+        assertEquals("2", single.get(2L));
+    }
+
     public void testPutAll() {
         Map<String, Integer> map = new HashMap<>();
         fillTable(map);
@@ -241,6 +391,27 @@ public class HashTableTest extends TestCase {
         assertEquals(15, (int) ht.get("test1"));
     }
 
+    public void testMergeCountsInPlace() {
+        HashTable<Integer, Integer> counts = new HashTable<>();
+        for (int i = 0; i < 10_000; i++) {
+            counts.merge(i % 100, 1, Integer::sum);
+        }
+        assertEquals(100, counts.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(100, (int) counts.get(i));
+        }
+        Map.Entry<Integer, Integer> entry = counts.entrySet().iterator().next();
+        counts.merge(entry.getKey(), 1, Integer::sum);
+        assertEquals(101, (int) entry.getValue());
+        assertThrows(ConcurrentModificationException.class,
+                () -> counts.computeIfAbsent(-1, k -> {
+                    counts.put(-2, 0);
+                    return 1;
+                }));
+        assertThrows(ConcurrentModificationException.class,
+                () -> counts.merge(0, 1, (a, b) -> counts.remove(1)));
+    }
+
     public void testMerge() {
         ht.put("test1", 10);
         ht.put("test2", 20);
@@ -254,4 +425,495 @@ public class HashTableTest extends TestCase {
         assertThrows(NullPointerException.class, () -> ht.merge(null, 100, (key, val) -> val + 100));
         assertThrows(NullPointerException.class, () -> ht.merge("test1", null, (key, val) -> val + 100));
     }
-}
\ No newline at end of file
+
+    private void checkProbing(HashTable.Probing probing, float loadFactor) {
+        HashTable<Integer, Integer> table = new HashTable<>(4, loadFactor, probing);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(probing.ordinal());
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(5_000);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> assertEquals(expected.put(key, i), table.put(key, i));
+                case 2 -> assertEquals(expected.remove(key), table.remove(key));
+                default -> assertEquals(expected.merge(key, 1, Integer::sum), table.merge(key, 1, Integer::sum));
+            }
+        }
+        assertEquals(expected, table);
+        assertEquals(table, expected);
+        for (int key = 0; key < 5_000; key++) {
+            assertEquals(expected.get(key), table.get(key));
+        }
+        table.clear();
+        assertTrue(table.isEmpty());
+        table.put(1, 1);
+        assertEquals(1, (int) table.get(1));
+    }
+
+    public void testProbingStrategies() {
+        for (HashTable.Probing probing : HashTable.Probing.values()) {
+            checkProbing(probing, 0.75f);
+        }
+        checkProbing(HashTable.Probing.ROBIN_HOOD, 0.95f);
+        checkProbing(HashTable.Probing.BUCKETIZED, 0.9f);
+    }
+
+    public void testProbingWithCollidingHashes() {
+        record Key(int id) {
+            @Override
+            public int hashCode() {
+                return id % 7;
+            }
+        }
+        for (HashTable.Probing probing : HashTable.Probing.values()) {
+            HashTable<Key, Integer> table = new HashTable<>(16, 0.9f, probing);
+            for (int i = 0; i < 300; i++) {
+                table.put(new Key(i), i);
+            }
+            for (int i = 0; i < 300; i += 2) {
+                assertEquals(i, (int) table.remove(new Key(i)));
+            }
+            for (int i = 0; i < 300; i++) {
+                assertEquals(i % 2 == 0 ? null : (Integer) i, table.get(new Key(i)));
+            }
+            assertEquals(150, table.size());
+        }
+    }
+
+    public void testProbeLengthHistogram() {
+        for (HashTable.Probing probing : HashTable.Probing.values()) {
+            HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, probing);
+            for (int i = 0; i < 10_000; i++) {
+                table.put(i, i);
+            }
+            int[] histogram = table.probeLengthHistogram();
+            assertEquals(10_000, Arrays.stream(histogram).sum());
+            assertTrue(histogram[0] > 0);
+            assertTrue(table.averageProbeLength() >= 1);
+        }
+        assertEquals(0, new HashTable<>().probeLengthHistogram().length);
+    }
+
+    public void testProbingArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new HashTable<>(16, 0.75f, HashTable.ResizeMode.INCREMENTAL, HashTable.Addressing.POWER_OF_TWO, HashTable.Probing.ROBIN_HOOD));
+        assertThrows(IllegalArgumentException.class,
+                () -> new HashTable<>(16, 0.75f, HashTable.ResizeMode.FULL, HashTable.Addressing.MODULO, HashTable.Probing.BUCKETIZED));
+        assertThrows(IllegalArgumentException.class, () -> new HashTable<>(16, 1f, HashTable.Probing.ROBIN_HOOD));
+        assertThrows(IllegalArgumentException.class,
+                () -> new HashTable<>(16, 0.75f, HashTable.ResizeMode.FULL, HashTable.Addressing.MODULO, HashTable.Probing.CUCKOO));
+    }
+
+    public void testIteratorFailFast() {
+        HashTable<Integer, Integer> table = new HashTable<>();
+        table.put(1, 1);
+        table.put(2, 2);
+        Iterator<Integer> iterator = table.keySet().iterator();
+        iterator.next();
+        table.put(3, 3);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+        iterator = table.keySet().iterator();
+        for (int i = 0; i < 3; i++) iterator.next();
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+        assertThrows(ConcurrentModificationException.class, () -> table.forEach((k, v) -> table.remove(k)));
+        assertThrows(ConcurrentModificationException.class, () -> table.replaceAll((k, v) -> {
+            table.put(k + 100, v);
+            return v;
+        }));
+    }
+
+    public void testIteratorRemove() {
+        for (HashTable.Probing probing : HashTable.Probing.values()) {
+            HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, probing);
+            Map<Integer, Integer> expected = new HashMap<>();
+            for (int i = 0; i < 1000; i++) {
+                table.put(i, i);
+                expected.put(i, i);
+            }
+            Iterator<Integer> iterator = table.keySet().iterator();
+            assertThrows(IllegalStateException.class, iterator::remove);
+            int seen = 0;
+            while (iterator.hasNext()) {
+                iterator.next();
+                seen++;
+                iterator.remove();
+                assertThrows(IllegalStateException.class, iterator::remove);
+            }
+            assertEquals(1000, seen);
+            assertTrue(table.isEmpty());
+            for (int i = 0; i < 1000; i++) table.put(i, i);
+            assertTrue(table.keySet().removeIf(k -> k % 3 == 0));
+            expected.keySet().removeIf(k -> k % 3 == 0);
+            assertEquals(expected, table);
+            assertEquals(expected.hashCode(), table.hashCode());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i % 3 != 0, table.containsKey(i));
+            }
+        }
+    }
+
+    public void testSpliterator() {
+        HashTable<Integer, Integer> table = new HashTable<>();
+        for (int i = 0; i < 10000; i++) table.put(i, i * 2);
+        Spliterator<Integer> spliterator = table.keySet().spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.NONNULL));
+        assertEquals(10000, spliterator.getExactSizeIfKnown());
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        assertFalse(prefix.hasCharacteristics(Spliterator.SIZED));
+        assertFalse(table.values().spliterator().hasCharacteristics(Spliterator.DISTINCT));
+        assertEquals(49995000L, table.keySet().parallelStream().mapToLong(Integer::longValue).sum());
+        assertEquals(99990000L, table.values().parallelStream().mapToLong(Integer::longValue).sum());
+        assertEquals(10000, table.entrySet().parallelStream().filter(e -> e.getValue() == e.getKey() * 2).count());
+        Spliterator<Integer> failing = table.keySet().spliterator();
+        assertThrows(ConcurrentModificationException.class, () -> failing.tryAdvance(k -> table.put(-1, -1)));
+        assertThrows(ConcurrentModificationException.class, () -> table.keySet().spliterator().forEachRemaining(table::remove));
+    }
+
+    public void testBulkOperations() {
+        HashTable<Integer, Integer> table = new HashTable<>();
+        for (int i = 0; i < 100000; i++) table.put(i, i);
+        for (long threshold : new long[]{1, 1000, Long.MAX_VALUE}) {
+            java.util.concurrent.atomic.LongAdder sum = new java.util.concurrent.atomic.LongAdder();
+            table.forEach(threshold, (k, v) -> sum.add(v));
+            assertEquals(4999950000L, sum.sum());
+            assertEquals(4999950000L, (long) table.reduce(threshold, (k, v) -> (long) v, Long::sum));
+            assertNull(table.reduce(threshold, (k, v) -> null, (a, b) -> a));
+            assertEquals(77777, (int) table.search(threshold, (k, v) -> k == 77777 ? v : null));
+            assertNull(table.search(threshold, (k, v) -> null));
+        }
+        assertThrows(ConcurrentModificationException.class, () -> table.forEach(Long.MAX_VALUE, (k, v) -> table.remove(k)));
+    }
+
+    public void testBatchOperations() {
+        for (HashTable.Probing probing : HashTable.Probing.values()) {
+            HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, probing);
+            Map<Integer, Integer> source = new HashMap<>();
+            for (int i = 0; i < 5000; i++) source.put(i, i);
+            table.putAll(source);
+            assertEquals(source, table);
+            for (int i = 0; i < 5000; i += 2) source.put(i, -i);
+            table.putAll(source);
+            assertEquals(source, table);
+            assertEquals(5000, table.size());
+
+            Integer[] keys = new Integer[1003];
+            for (int i = 0; i < keys.length; i++) keys[i] = i * 7;
+            Integer[] out = new Integer[keys.length];
+            assertEquals(715, table.getAll(keys, out));
+            for (int i = 0; i < keys.length; i++) {
+                assertEquals(table.get(keys[i]), out[i]);
+            }
+            assertThrows(IllegalArgumentException.class, () -> table.getAll(keys, new Integer[1]));
+            assertThrows(NullPointerException.class, () -> table.getAll(new Integer[]{1, null}, new Integer[2]));
+
+            assertTrue(table.removeAll(Arrays.asList(keys)));
+            assertFalse(table.removeAll(Arrays.asList(keys)));
+            assertEquals(5000 - 715, table.size());
+            for (Integer key : keys) assertFalse(table.containsKey(key));
+            assertTrue(table.keySet().removeAll(List.of(1, 2, 3)));
+            assertEquals(5000 - 715 - 3, table.size());
+        }
+    }
+
+    public void testPutAllPresizes() {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, HashTable.ResizeMode.INCREMENTAL);
+        Map<Integer, Integer> source = new HashMap<>();
+        for (int i = 0; i < 10000; i++) source.put(i, i);
+        table.putAll(source);
+        assertEquals(source, table);
+        assertTrue(table.capacity() * 0.75 > 10_000);
+    }
+
+    public void testShrinkAfterRemovals() {
+        for (HashTable.ResizeMode mode : HashTable.ResizeMode.values()) {
+            HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, mode);
+            table.setShrinkThreshold(0.25f);
+            for (int i = 0; i < 100_000; i++) table.put(i, i);
+            int peak = table.capacity();
+            for (int i = 0; i < 99_000; i++) assertEquals(i, (int) table.remove(i));
+            assertTrue(table.capacity() < peak / 16);
+            for (int i = 99_000; i < 100_000; i++) assertEquals(i, (int) table.get(i));
+            assertEquals(1000, table.size());
+            //Гистерезис: удаление и вставка на границе не перестраивают таблицу каждый раз
+            int capacity = table.capacity();
+            for (int i = 0; i < 1000; i++) {
+                table.remove(99_000 + i % 10);
+                table.put(99_000 + i % 10, 0);
+            }
+            assertEquals(capacity, table.capacity());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new HashTable<>().setShrinkThreshold(0.5f));
+    }
+
+    public void testShrinkWithProbing() {
+        for (HashTable.Probing probing : HashTable.Probing.values()) {
+            HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, probing);
+            table.setShrinkThreshold(0.2f);
+            for (int i = 0; i < 10_000; i++) table.put(i, i);
+            for (int i = 0; i < 9_990; i++) table.remove(i);
+            assertTrue(table.capacity() <= 64);
+            for (int i = 9_990; i < 10_000; i++) assertEquals(i, (int) table.get(i));
+        }
+    }
+
+    public void testTrimToSize() {
+        HashTable<Integer, Integer> table = new HashTable<>();
+        for (int i = 0; i < 10_000; i++) table.put(i, i);
+        for (int i = 0; i < 9_900; i++) table.remove(i);
+        int capacity = table.capacity();
+        table.trimToSize();
+        assertTrue(table.capacity() < capacity);
+        assertTrue(table.capacity() * 0.75 > 100);
+        assertEquals(0, table.deletedCount());
+        for (int i = 9_900; i < 10_000; i++) assertEquals(i, (int) table.get(i));
+        table.put(-1, -1);
+        assertEquals(101, table.size());
+    }
+
+    public void testClearRetainsCapacity() {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, HashTable.Probing.BUCKETIZED);
+        for (int i = 0; i < 1000; i++) table.put(i, i);
+        int capacity = table.capacity();
+        table.setRetainCapacityOnClear(true);
+        table.clear();
+        assertTrue(table.isEmpty());
+        assertEquals(capacity, table.capacity());
+        assertNull(table.get(5));
+        for (int i = 0; i < 1000; i++) table.put(i, -i);
+        assertEquals(capacity, table.capacity());
+        assertEquals(-5, (int) table.get(5));
+        table.setRetainCapacityOnClear(false);
+        table.clear();
+        assertEquals(16, table.capacity());
+    }
+
+    public void testCuckooLookupTouchesTwoBuckets() {
+        HashTable<String, Integer> table = new HashTable<>(16, 0.9f, HashTable.Probing.CUCKOO);
+        for (int i = 0; i < 100_000; i++) {
+            table.put("key" + i, i);
+        }
+        int[] histogram = table.probeLengthHistogram();
+        //Первая корзина, вторая корзина, stash
+        assertTrue(histogram.length <= 3);
+        assertTrue(histogram[0] > histogram[1]);
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i, (int) table.get("key" + i));
+        }
+        for (int i = 0; i < 100_000; i += 3) {
+            assertEquals(i, (int) table.remove("key" + i));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i % 3 == 0 ? null : (Integer) i, table.get("key" + i));
+        }
+    }
+
+    public void testCuckooStash() {
+        record Key(int id) {
+            @Override
+            public int hashCode() {
+                return id % 3;
+            }
+        }
+        HashTable<Key, Integer> table = new HashTable<>(16, 0.75f, HashTable.Probing.CUCKOO);
+        for (int i = 0; i < 100; i++) {
+            table.put(new Key(i), i);
+        }
+        int[] histogram = table.probeLengthHistogram();
+        assertEquals(3, histogram.length);
+        assertTrue(histogram[2] > 0);
+        //Удаление через итератор с переносом внутри stash не теряет элементы
+        Iterator<Key> iterator = table.keySet().iterator();
+        int seen = 0;
+        while (iterator.hasNext()) {
+            Key key = iterator.next();
+            seen++;
+            if (key.id() % 2 == 0) iterator.remove();
+        }
+        assertEquals(100, seen);
+        assertEquals(50, table.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 0 ? null : (Integer) i, table.get(new Key(i)));
+        }
+    }
+
+    //Строки из блоков "Aa" и "BB" имеют одинаковый hashCode()
+    private static List<String> collidingStrings(int blocks) {
+        List<String> keys = new ArrayList<>(List.of(""));
+        for (int b = 0; b < blocks; b++) {
+            List<String> next = new ArrayList<>();
+            for (String key : keys) {
+                next.add(key + "Aa");
+                next.add(key + "BB");
+            }
+            keys = next;
+        }
+        return keys;
+    }
+
+    public void testHashFlooding() {
+        for (HashTable.Probing probing : HashTable.Probing.values()) {
+            HashTable<String, Integer> table = probing == HashTable.Probing.DOUBLE_HASHING
+                    ? new HashTable<>() : new HashTable<>(16, 0.75f, probing);
+            List<String> keys = collidingStrings(10);
+            assertEquals(1, keys.stream().mapToInt(String::hashCode).distinct().count());
+            for (int i = 0; i < keys.size(); i++) {
+                table.put(keys.get(i), i);
+            }
+            assertTrue(table.hardened());
+            assertEquals(keys.size(), table.size());
+            for (int i = 0; i < keys.size(); i++) {
+                assertEquals(i, (int) table.get(keys.get(i)));
+            }
+            assertNull(table.get("AaAaAaAaAaAaAaAaAaAaAa"));
+            //После перехода на SipHash цепочки снова короткие
+            int[] histogram = table.probeLengthHistogram();
+            assertTrue(histogram.length < 16);
+        }
+    }
+
+    public void testOrdinaryKeysNotHardened() {
+        HashTable<String, Integer> table = new HashTable<>();
+        for (int i = 0; i < 100_000; i++) {
+            table.put("key" + i, i);
+        }
+        assertFalse(table.hardened());
+    }
+
+    public void testSnapshot() {
+        for (HashTable.Probing probing : HashTable.Probing.values()) {
+            HashTable<Integer, Integer> table = probing == HashTable.Probing.DOUBLE_HASHING
+                    ? new HashTable<>(16, 0.75f, HashTable.ResizeMode.INCREMENTAL) : new HashTable<>(16, 0.75f, probing);
+            for (int i = 0; i < 1_000; i++) {
+                table.put(i, i);
+            }
+            Map<Integer, Integer> expected = new HashMap<>(table);
+            HashTable<Integer, Integer> snapshot = table.snapshot();
+            assertSame(snapshot, table.snapshot());
+            assertSame(snapshot, snapshot.snapshot());
+            //Изменения значений, удаления, вставки с расширением и перестройки не видны снимку
+            for (int i = 0; i < 1_000; i += 2) {
+                table.put(i, -i);
+            }
+            for (int i = 1; i < 1_000; i += 4) {
+                table.remove(i);
+            }
+            table.merge(3, 10, Integer::sum);
+            table.compute(7, (k, v) -> v * 100);
+            table.replaceAll((k, v) -> v + 1);
+            for (int i = 1_000; i < 5_000; i++) {
+                table.put(i, i);
+            }
+            assertEquals(expected, snapshot);
+            assertEquals(expected.size(), snapshot.size());
+            assertEquals(new HashSet<>(expected.keySet()), new HashSet<>(snapshot.keySet()));
+            assertEquals(-7, (int) table.get(8));
+            assertEquals(8, (int) snapshot.get(8));
+            //Снимок после изменений видит новое состояние
+            HashTable<Integer, Integer> second = table.snapshot();
+            assertNotSame(snapshot, second);
+            assertEquals(table, second);
+            table.clear();
+            assertTrue(table.isEmpty());
+            assertEquals(expected, snapshot);
+            assertEquals(4_000 + 1_000 - 250, second.size());
+        }
+    }
+
+    public void testSnapshotReadOnly() {
+        HashTable<String, Integer> table = new HashTable<>();
+        table.put("a", 1);
+        table.put("b", 2);
+        HashTable<String, Integer> snapshot = table.snapshot();
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.put("c", 3));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.remove("a"));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.replace("a", 5));
+        assertThrows(UnsupportedOperationException.class, snapshot::clear);
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.computeIfAbsent("d", k -> 4));
+        Iterator<Map.Entry<String, Integer>> iterator = snapshot.entrySet().iterator();
+        Map.Entry<String, Integer> entry = iterator.next();
+        assertThrows(UnsupportedOperationException.class, () -> entry.setValue(10));
+        assertThrows(UnsupportedOperationException.class, iterator::remove);
+        assertEquals(Map.of("a", 1, "b", 2), snapshot);
+        assertEquals(Map.of("a", 1, "b", 2), table);
+    }
+
+    public void testSnapshotEntrySetValue() {
+        HashTable<Integer, Integer> table = new HashTable<>();
+        for (int i = 0; i < 100; i++) {
+            table.put(i, i);
+        }
+        HashTable<Integer, Integer> snapshot = table.snapshot();
+        //Запись через элемент итератора и удаление через итератор не меняют снимок
+        Iterator<Map.Entry<Integer, Integer>> iterator = table.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Integer> entry = iterator.next();
+            if (entry.getKey() % 2 == 0) {
+                assertEquals(entry.getKey(), entry.setValue(-entry.getKey()));
+                assertEquals(-entry.getKey(), (int) entry.getValue());
+            } else {
+                iterator.remove();
+            }
+        }
+        assertEquals(50, table.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 0 ? (Integer) (-i) : null, table.get(i));
+            assertEquals(i, (int) snapshot.get(i));
+        }
+    }
+
+    public void testSnapshotConcurrentReader() throws Exception {
+        HashTable<Integer, Integer> table = new HashTable<>(16, 0.75f, HashTable.Probing.ROBIN_HOOD);
+        for (int i = 0; i < 10_000; i++) {
+            table.put(i, 1);
+        }
+        HashTable<Integer, Integer> snapshot = table.snapshot();
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        Thread reader = new Thread(() -> {
+            try {
+                for (int round = 0; round < 50; round++) {
+                    int sum = 0;
+                    for (int value : snapshot.values()) {
+                        sum += value;
+                    }
+                    assertEquals(10_000, sum);
+                    for (int i = 0; i < 10_000; i++) {
+                        assertEquals(1, (int) snapshot.get(i));
+                    }
+                }
+            } catch (Throwable e) {
+                errors.add(e);
+            }
+        });
+        reader.start();
+        for (int round = 2; round < 20; round++) {
+            for (int i = 0; i < 10_000; i++) {
+                table.put(i, round);
+            }
+            for (int i = 10_000; i < 20_000; i++) {
+                table.put(i, round);
+                table.remove(i);
+            }
+        }
+        reader.join();
+        assertEquals(List.of(), errors);
+    }
+
+    public void testSnapshotAfterFlood() {
+        HashTable<String, Integer> table = new HashTable<>();
+        List<String> keys = collidingStrings(10);
+        for (int i = 0; i < 4; i++) {
+            table.put(keys.get(i), i);
+        }
+        HashTable<String, Integer> snapshot = table.snapshot();
+        for (int i = 4; i < keys.size(); i++) {
+            table.put(keys.get(i), i);
+        }
+        assertTrue(table.hardened());
+        assertEquals(4, snapshot.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(i < 4 ? (Integer) i : null, snapshot.get(keys.get(i)));
+            assertEquals(i, (int) table.get(keys.get(i)));
+        }
+    }
+}
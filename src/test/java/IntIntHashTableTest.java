@@ -0,0 +1,85 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class IntIntHashTableTest extends TestCase {
+    IntIntHashTable table = new IntIntHashTable();
+
+    public void testPutGet() {
+        assertEquals(0, table.put(1, 10));
+        assertEquals(10, table.put(1, 20));
+        assertEquals(20, table.get(1));
+        assertEquals(0, table.get(2));
+        assertEquals(-1, table.getOrDefault(2, -1));
+        assertTrue(table.containsKey(1));
+        assertFalse(table.containsKey(2));
+        assertEquals(1, table.size());
+    }
+
+    public void testGrowAndRemove() {
+        for (int i = -5000; i < 5000; i++) {
+            table.put(i, i * 3);
+        }
+        assertEquals(10_000, table.size());
+        for (int i = -5000; i < 5000; i += 2) {
+            assertEquals(i * 3, table.remove(i));
+        }
+        assertEquals(5000, table.size());
+        for (int i = -5000; i < 5000; i++) {
+            assertEquals(i % 2 != 0, table.containsKey(i));
+        }
+        table.clear();
+        assertTrue(table.isEmpty());
+        assertFalse(table.containsKey(1));
+    }
+
+    public void testAsMap() {
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            table.put(i, i + 1);
+            expected.put(i, i + 1);
+        }
+        Map<Integer, Integer> map = table.asMap();
+        assertEquals(expected, map);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertNull(map.put(100, 1));
+        assertEquals(1, (int) map.remove(100));
+        assertNull(map.get("1"));
+        map.entrySet().removeIf(e -> e.getKey() % 2 == 0);
+        assertEquals(50, table.size());
+        map.replaceAll((k, v) -> v * 2);
+        assertEquals(4, table.get(1));
+        assertThrows(NullPointerException.class, () -> map.put(1, null));
+    }
+
+    public void testEntryAfterRehash() {
+        table.put(1, 1);
+        Map.Entry<Integer, Integer> entry = table.asMap().entrySet().iterator().next();
+        for (int i = 2; i < 100; i++) {
+            table.put(i, i);
+        }
+        assertEquals(1, (int) entry.setValue(42));
+        assertEquals(42, table.get(1));
+        for (int i = 2; i < 100; i++) {
+            assertEquals(i, table.get(i));
+        }
+        //Удалённый ключ запись не возвращает в таблицу
+        table.remove(1);
+        assertEquals(42, (int) entry.getValue());
+        assertEquals(42, (int) entry.setValue(7));
+        assertEquals(7, (int) entry.getValue());
+        assertFalse(table.containsKey(1));
+        assertEquals(98, table.size());
+    }
+
+    public void testIteratorFailFast() {
+        table.put(1, 1);
+        table.put(2, 2);
+        Iterator<Map.Entry<Integer, Integer>> it = table.asMap().entrySet().iterator();
+        it.next();
+        table.remove(2);
+        table.put(3, 3);
+        assertThrows(ConcurrentModificationException.class, it::next);
+        assertThrows(ConcurrentModificationException.class, it::remove);
+    }
+}
@@ -0,0 +1,71 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class LongLongHashTableTest extends TestCase {
+    LongLongHashTable table = new LongLongHashTable();
+
+    public void testPutGet() {
+        assertEquals(0L, table.put(1L << 40, 10L));
+        assertEquals(10L, table.put(1L << 40, 20L));
+        assertEquals(20L, table.get(1L << 40));
+        assertEquals(0L, table.get(1L));
+        assertEquals(-1L, table.getOrDefault(1L, -1L));
+        assertEquals(1, table.size());
+    }
+
+    public void testGrowAndRemove() {
+        for (long i = 0; i < 10_000; i++) {
+            table.put(i * 0x9E3779B97F4A7C15L, i);
+        }
+        assertEquals(10_000, table.size());
+        for (long i = 0; i < 10_000; i += 2) {
+            assertEquals(i, table.remove(i * 0x9E3779B97F4A7C15L));
+        }
+        for (long i = 0; i < 10_000; i++) {
+            assertEquals(i % 2 != 0, table.containsKey(i * 0x9E3779B97F4A7C15L));
+        }
+        assertEquals(5000, table.asMap().size());
+    }
+
+    public void testAsMap() {
+        table.put(5L, 6L);
+        Map<Long, Long> map = table.asMap();
+        assertEquals(Map.of(5L, 6L), map);
+        assertEquals(6L, (long) map.put(5L, 7L));
+        assertEquals(7L, table.get(5L));
+        assertTrue(map.containsKey(5L));
+        assertFalse(map.containsKey(5));
+    }
+
+    public void testEntryAfterRehash() {
+        table.put(1L, 1L);
+        Map.Entry<Long, Long> entry = table.asMap().entrySet().iterator().next();
+        for (int i = 2; i < 100; i++) {
+            table.put((long) i, (long) i);
+        }
+        assertEquals(1L, (long) entry.setValue(42L));
+        assertEquals(42L, table.get(1L));
+        for (int i = 2; i < 100; i++) {
+            assertEquals((long) i, table.get((long) i));
+        }
+        //Удалённый ключ запись не возвращает в таблицу
+        table.remove(1L);
+        assertEquals(42L, (long) entry.getValue());
+        assertEquals(42L, (long) entry.setValue(7L));
+        assertEquals(7L, (long) entry.getValue());
+        assertFalse(table.containsKey(1L));
+        assertEquals(98, table.size());
+    }
+
+    public void testIteratorFailFast() {
+        table.put(1L, 1L);
+        table.put(2L, 2L);
+        Iterator<Map.Entry<Long, Long>> it = table.asMap().entrySet().iterator();
+        it.next();
+        table.remove(2L);
+        table.put(3L, 3L);
+        assertThrows(ConcurrentModificationException.class, it::next);
+        assertThrows(ConcurrentModificationException.class, it::remove);
+    }
+}
@@ -0,0 +1,74 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class LongObjectHashTableTest extends TestCase {
+    LongObjectHashTable<String> table = new LongObjectHashTable<>();
+
+    public void testPutGet() {
+        assertNull(table.put(1L, "a"));
+        assertEquals("a", table.put(1L, "b"));
+        assertEquals("b", table.get(1L));
+        assertNull(table.get(2L));
+        assertEquals("c", table.getOrDefault(2L, "c"));
+        assertThrows(NullPointerException.class, () -> table.put(3L, null));
+    }
+
+    public void testGrowAndRemove() {
+        for (long i = 0; i < 10_000; i++) {
+            table.put(i << 32, String.valueOf(i));
+        }
+        for (long i = 0; i < 10_000; i += 2) {
+            assertEquals(String.valueOf(i), table.remove(i << 32));
+        }
+        assertEquals(5000, table.size());
+        for (long i = 0; i < 10_000; i++) {
+            assertEquals(i % 2 != 0 ? String.valueOf(i) : null, table.get(i << 32));
+        }
+    }
+
+    public void testAsMap() {
+        Map<Long, String> expected = new HashMap<>();
+        for (long i = 0; i < 50; i++) {
+            table.put(i, "v" + i);
+            expected.put(i, "v" + i);
+        }
+        assertEquals(expected, table.asMap());
+        Iterator<Map.Entry<Long, String>> it = table.asMap().entrySet().iterator();
+        it.next();
+        it.remove();
+        assertEquals(49, table.size());
+        assertThrows(IllegalStateException.class, it::remove);
+    }
+
+    public void testEntryAfterRehash() {
+        table.put(1L, "1");
+        Map.Entry<Long, String> entry = table.asMap().entrySet().iterator().next();
+        for (int i = 2; i < 100; i++) {
+            table.put((long) i, "" + i);
+        }
+        assertEquals("1", entry.setValue("42"));
+        assertEquals("42", table.get(1L));
+        for (int i = 2; i < 100; i++) {
+            assertEquals("" + i, table.get((long) i));
+        }
+        //Удалённый ключ запись не возвращает в таблицу
+        table.remove(1L);
+        assertEquals("42", entry.getValue());
+        assertEquals("42", entry.setValue("7"));
+        assertEquals("7", entry.getValue());
+        assertFalse(table.containsKey(1L));
+        assertEquals(98, table.size());
+    }
+
+    public void testIteratorFailFast() {
+        table.put(1L, "1");
+        table.put(2L, "2");
+        Iterator<Map.Entry<Long, String>> it = table.asMap().entrySet().iterator();
+        it.next();
+        table.remove(2L);
+        table.put(3L, "3");
+        assertThrows(ConcurrentModificationException.class, it::next);
+        assertThrows(ConcurrentModificationException.class, it::remove);
+    }
+}
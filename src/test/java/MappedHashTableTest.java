@@ -0,0 +1,95 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class MappedHashTableTest extends TestCase {
+    Path dir;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("mapped");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    private void checkRoundTrip(HashTable<String, Integer> table) throws IOException {
+        Path file = dir.resolve("table.bin");
+        table.save(file, Codec.STRING, Codec.INTEGER);
+        try (MappedHashTable<String, Integer> mapped = MappedHashTable.open(file, Codec.STRING, Codec.INTEGER)) {
+            assertEquals(table.capacity(), mapped.capacity());
+            //Ячейки записаны напрямую, без перестройки через копию
+            assertEquals(new ArrayList<>(table.keySet()), new ArrayList<>(mapped.keySet()));
+            assertEquals(table, mapped);
+            assertEquals(mapped, table);
+            for (String key : table.keySet()) {
+                assertEquals(table.get(key), mapped.get(key));
+            }
+            assertNull(mapped.get("missing"));
+            assertThrows(UnsupportedOperationException.class, () -> mapped.put("a", 1));
+            assertThrows(UnsupportedOperationException.class, () -> mapped.remove("key1"));
+        }
+    }
+
+    public void testModuloWithTombstones() throws IOException {
+        HashTable<String, Integer> table = new HashTable<>();
+        for (int i = 0; i < 5_000; i++) {
+            table.put("key" + i, i);
+            if (i % 4 == 0) table.remove("key" + (i / 2));
+        }
+        checkRoundTrip(table);
+    }
+
+    public void testPowerOfTwo() throws IOException {
+        HashTable<String, Integer> table = new HashTable<>(16, 0.75f, HashTable.Addressing.POWER_OF_TWO);
+        for (int i = 0; i < 5_000; i++) {
+            table.put("ключ" + i, i);
+        }
+        checkRoundTrip(table);
+    }
+
+    public void testHardenedTable() throws IOException {
+        HashTable<String, Integer> table = new HashTable<>();
+        //Строки из блоков "Aa" и "BB" имеют одинаковый hashCode(), таблица переходит на SipHash
+        List<String> keys = new ArrayList<>(List.of(""));
+        for (int b = 0; b < 10; b++) {
+            List<String> next = new ArrayList<>();
+            for (String key : keys) {
+                next.add(key + "Aa");
+                next.add(key + "BB");
+            }
+            keys = next;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            table.put(keys.get(i), i);
+        }
+        assertTrue(table.hardened());
+        checkRoundTrip(table);
+    }
+
+    public void testEmptyAndCorrupted() throws IOException {
+        checkRoundTrip(new HashTable<>());
+        Path file = dir.resolve("table.bin");
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> MappedHashTable.open(file, Codec.STRING, Codec.INTEGER));
+    }
+
+    public void testClose() throws IOException {
+        HashTable<String, Integer> table = new HashTable<>();
+        table.put("a", 1);
+        Path file = dir.resolve("table.bin");
+        table.save(file, Codec.STRING, Codec.INTEGER);
+        MappedHashTable<String, Integer> mapped = MappedHashTable.open(file, Codec.STRING, Codec.INTEGER);
+        assertEquals(1, (int) mapped.get("a"));
+        mapped.close();
+        assertThrows(IllegalStateException.class, () -> mapped.get("a"));
+    }
+}
@@ -0,0 +1,69 @@
+import junit.framework.TestCase;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+public class OffHeapHashTableTest extends TestCase {
+    OffHeapHashTable<String, Long> table = new OffHeapHashTable<>(Codec.STRING, Codec.LONG);
+
+    @Override
+    protected void tearDown() {
+        table.close();
+    }
+
+    public void testPutGetRemove() {
+        assertNull(table.put("a", 1L));
+        assertEquals(1L, (long) table.put("a", 2L));
+        assertEquals(2L, (long) table.get("a"));
+        assertNull(table.get("b"));
+        assertNull(table.get(42));
+        assertTrue(table.containsKey("a"));
+        assertEquals(2L, (long) table.remove("a"));
+        assertNull(table.remove("a"));
+        assertTrue(table.isEmpty());
+        assertThrows(NullPointerException.class, () -> table.put(null, 1L));
+        assertThrows(NullPointerException.class, () -> table.put("c", null));
+        assertThrows(NullPointerException.class, () -> table.get(null));
+    }
+
+    public void testGrowAndChurn() {
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            table.put("key" + i, (long) i);
+            expected.put("key" + i, (long) i);
+            if (i % 3 == 0) {
+                table.remove("key" + (i / 2));
+                expected.remove("key" + (i / 2));
+                table.put("key" + (i / 3), -1L);
+                expected.put("key" + (i / 3), -1L);
+            }
+        }
+        assertEquals(expected, table);
+        assertEquals(table, expected);
+        assertEquals(expected.hashCode(), table.hashCode());
+    }
+
+    public void testLongValuesAndIterator() {
+        OffHeapHashTable<Integer, String> strings = new OffHeapHashTable<>(Codec.INTEGER, Codec.STRING, 4, 0.75f, 16);
+        String big = "x".repeat(10_000);
+        for (int i = 0; i < 10; i++) {
+            strings.put(i, big + i);
+        }
+        assertEquals(big + 7, strings.get(7));
+        for (Map.Entry<Integer, String> entry : strings.entrySet()) {
+            entry.setValue("v" + entry.getKey());
+        }
+        assertEquals("v3", strings.get(3));
+        strings.entrySet().removeIf(e -> e.getKey() % 2 == 0);
+        assertEquals(Set.of(1, 3, 5, 7, 9), strings.keySet());
+        Iterator<Integer> iterator = strings.keySet().iterator();
+        iterator.next();
+        strings.put(100, "y");
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+        strings.clear();
+        assertTrue(strings.isEmpty());
+        assertNull(strings.get(1));
+        strings.close();
+        assertEquals(0, strings.offHeapBytes());
+        assertThrows(IllegalStateException.class, () -> strings.get(1));
+    }
+}
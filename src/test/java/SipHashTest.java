@@ -0,0 +1,25 @@
+import junit.framework.TestCase;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SipHashTest extends TestCase {
+    private static final long K0 = 0x0706050403020100L;
+    private static final long K1 = 0x0f0e0d0c0b0a0908L;
+
+    //Эталонные значения SipHash-2-4 для байтов строки в UTF-16LE
+    public void testReferenceVectors() {
+        assertEquals(8246050544436514353L, SipHash.hash(K0, K1, ""));
+        assertEquals(-4619565734113845759L, SipHash.hash(K0, K1, "a"));
+        assertEquals(1121059737935452438L, SipHash.hash(K0, K1, "ab"));
+        assertEquals(8421606372312031060L, SipHash.hash(K0, K1, "abc"));
+        assertEquals(-8708111950156408705L, SipHash.hash(K0, K1, "abcd"));
+        assertEquals(211172240755864955L, SipHash.hash(K0, K1, "abcde"));
+        assertEquals(2908358387711487261L, SipHash.hash(K0, K1, "Привет, мир!"));
+        assertEquals(-8374097781619383553L, SipHash.hash(K0, K1, "AaBB"));
+    }
+
+    public void testKeyChangesHash() {
+        assertNotEquals(SipHash.hash(K0, K1, "AaAa"), SipHash.hash(K0, K1, "BBBB"));
+        assertNotEquals(SipHash.hash(K0, K1, "abc"), SipHash.hash(K0 + 1, K1, "abc"));
+    }
+}